@@ -0,0 +1,186 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.test.json;
+
+import android.os.Debug;
+import android.util.Log;
+
+import com.pindroid.json.JsonBookmarkParser;
+import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.xml.BookmarkStream;
+import com.pindroid.xml.SaxBookmarkParser;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the xml and json responses of a large account: the bytes each takes on the wire,
+ * and the time and memory each parser needs to read it.  Results go to the log under the
+ * ParserBenchmark tag.
+ */
+public class ParserBenchmark {
+	
+	private static final String TAG = "ParserBenchmark";
+	
+	private static final int BOOKMARKS = 5000;
+	private static final int WARMUP = 2;
+	private static final int RUNS = 5;
+	
+	private interface Parser {
+		ArrayList<Bookmark> parse(byte[] body) throws ParseException;
+	}
+
+	@Test
+	public void benchmarkLargeAccount() throws Exception {
+		final byte[] xml = buildXml(BOOKMARKS).getBytes("UTF-8");
+		final byte[] json = buildJson(BOOKMARKS).getBytes("UTF-8");
+		
+		Log.i(TAG, String.format("%d bookmarks: xml %d bytes (%d gzipped), json %d bytes (%d gzipped)", 
+			BOOKMARKS, xml.length, gzippedSize(xml), json.length, gzippedSize(json)));
+		
+		run("xml", xml, new Parser() {
+			public ArrayList<Bookmark> parse(byte[] body) throws ParseException {
+				return new SaxBookmarkParser(new ByteArrayInputStream(body)).parse();
+			}
+		});
+		run("xml pull", xml, new Parser() {
+			public ArrayList<Bookmark> parse(byte[] body) throws ParseException {
+				return BookmarkStream.forPosts(new ByteArrayInputStream(body)).readAll();
+			}
+		});
+		run("json", json, new Parser() {
+			public ArrayList<Bookmark> parse(byte[] body) throws ParseException {
+				return new JsonBookmarkParser(new ByteArrayInputStream(body)).parse();
+			}
+		});
+	}
+	
+	private static void run(String name, byte[] body, Parser parser) throws ParseException {
+		for(int i = 0; i < WARMUP; i++) {
+			assertEquals(BOOKMARKS, parser.parse(body).size());
+		}
+		
+		long elapsed = 0;
+		long allocated = 0;
+		int allocations = 0;
+		
+		for(int i = 0; i < RUNS; i++) {
+			System.gc();
+			Debug.resetThreadAllocCount();
+			Debug.resetThreadAllocSize();
+			Debug.startAllocCounting();
+			
+			final long start = System.nanoTime();
+			final ArrayList<Bookmark> bookmarks = parser.parse(body);
+			elapsed += System.nanoTime() - start;
+			
+			Debug.stopAllocCounting();
+			allocated += Debug.getThreadAllocSize();
+			allocations += Debug.getThreadAllocCount();
+			
+			assertEquals(BOOKMARKS, bookmarks.size());
+		}
+		
+		Log.i(TAG, String.format("%s: %.1f ms, %d objects, %d bytes allocated per parse", 
+			name, elapsed / RUNS / 1e6, allocations / RUNS, allocated / RUNS));
+	}
+	
+	private static int gzippedSize(byte[] body) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(body);
+		gzip.close();
+		return out.size();
+	}
+	
+	private static String buildXml(int count) {
+		final StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<posts user=\"user\">\n");
+		
+		for(int i = 0; i < count; i++) {
+			sb.append("<post href=\"").append(url(i))
+				.append("\" time=\"").append(time(i))
+				.append("\" description=\"").append(description(i))
+				.append("\" extended=\"").append(extended(i))
+				.append("\" tag=\"").append(tags(i))
+				.append("\" hash=\"").append(hash(i, 'a'))
+				.append("\" meta=\"").append(hash(i, 'b'))
+				.append("\" shared=\"").append(i % 7 == 0 ? "no" : "yes")
+				.append("\" toread=\"").append(i % 5 == 0 ? "yes" : "no")
+				.append("\" />\n");
+		}
+		return sb.append("</posts>").toString();
+	}
+	
+	private static String buildJson(int count) {
+		final StringBuilder sb = new StringBuilder("[");
+		
+		for(int i = 0; i < count; i++) {
+			if(i > 0)
+				sb.append(',');
+			
+			sb.append("{\"href\":\"").append(url(i).replace("/", "\\/"))
+				.append("\",\"description\":\"").append(description(i))
+				.append("\",\"extended\":\"").append(extended(i))
+				.append("\",\"meta\":\"").append(hash(i, 'b'))
+				.append("\",\"hash\":\"").append(hash(i, 'a'))
+				.append("\",\"time\":\"").append(time(i))
+				.append("\",\"shared\":\"").append(i % 7 == 0 ? "no" : "yes")
+				.append("\",\"toread\":\"").append(i % 5 == 0 ? "yes" : "no")
+				.append("\",\"tags\":\"").append(tags(i))
+				.append("\"}\n");
+		}
+		return sb.append("]").toString();
+	}
+	
+	private static String url(int i) {
+		return "http://example" + (i % 300) + ".com/articles/" + i + "/a-reasonably-long-slug";
+	}
+	
+	private static String time(int i) {
+		return String.format("20%02d-%02d-%02dT%02d:%02d:%02dZ", 10 + i % 8, 1 + i % 12, 1 + i % 28, i % 24, i % 60, (i * 7) % 60);
+	}
+	
+	private static String description(int i) {
+		return "Bookmark number " + i + " about something worth reading";
+	}
+	
+	private static String extended(int i) {
+		return i % 3 == 0 ? "" : "Some notes for bookmark " + i + ", written when it was saved.";
+	}
+	
+	private static String tags(int i) {
+		return "tag" + (i % 40) + " topic" + (i % 13) + (i % 4 == 0 ? " toolong" : "");
+	}
+	
+	private static String hash(int i, char salt) {
+		return String.format("%c%031x", salt, (long) i * 2654435761L);
+	}
+}
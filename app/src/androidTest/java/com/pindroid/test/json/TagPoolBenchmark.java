@@ -0,0 +1,162 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.test.json;
+
+import android.util.Log;
+
+import com.pindroid.Constants;
+import com.pindroid.json.JsonBookmarkParser;
+import com.pindroid.providers.BookmarkContent.Bookmark;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the heap retained by the bookmarks of a posts/all response and of one sync page,
+ * with the tag strings shared through the parser's pool and with a separate tag string per
+ * bookmark, as they were parsed before the pool.  Tags follow a long tail over a vocabulary
+ * of a few hundred, as in a real account.  Results go to the log under the TagPoolBenchmark
+ * tag.
+ */
+public class TagPoolBenchmark {
+	
+	private static final String TAG = "TagPoolBenchmark";
+	
+	private static final int BOOKMARKS = 5000;
+	private static final int VOCABULARY = 300;
+	private static final int RUNS = 5;
+
+	@Test
+	public void benchmarkRetainedHeap() throws Exception {
+		final Random random = new Random(42);
+		final String[] tags = new String[BOOKMARKS];
+		
+		for(int i = 0; i < BOOKMARKS; i++) {
+			tags[i] = tags(random);
+		}
+		
+		run("posts/all", buildJson(tags, BOOKMARKS).getBytes("UTF-8"), BOOKMARKS);
+		run("sync page", buildJson(tags, Constants.BOOKMARK_PAGE_SIZE).getBytes("UTF-8"), Constants.BOOKMARK_PAGE_SIZE);
+	}
+	
+	private static void run(String name, byte[] body, int count) throws ParseException {
+		long pooled = 0;
+		long unpooled = 0;
+		int instances = 0;
+		
+		for(int i = 0; i < RUNS; i++) {
+			final long base = usedHeap();
+			final ArrayList<Bookmark> bookmarks = new JsonBookmarkParser(new ByteArrayInputStream(body)).parse();
+			pooled += usedHeap() - base;
+			
+			final IdentityHashMap<String, Boolean> distinct = new IdentityHashMap<String, Boolean>();
+			for(Bookmark b : bookmarks) {
+				distinct.put(b.getTagString(), Boolean.TRUE);
+			}
+			instances = distinct.size();
+			distinct.clear();
+			
+			for(Bookmark b : bookmarks) {
+				b.setTagString(new String(b.getTagString()));
+			}
+			unpooled += usedHeap() - base;
+			
+			assertEquals(count, bookmarks.size());
+		}
+		
+		assertTrue(instances < count);
+		Log.i(TAG, String.format("%s: %d bookmarks, %d tag string instances, %d bytes retained pooled, %d unpooled", 
+			name, count, instances, pooled / RUNS, unpooled / RUNS));
+	}
+	
+	private static long usedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		
+		for(int i = 0; i < 3; i++) {
+			System.gc();
+			System.runFinalization();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	private static String buildJson(String[] tags, int count) {
+		final StringBuilder sb = new StringBuilder("[");
+		
+		for(int i = 0; i < count; i++) {
+			if(i > 0)
+				sb.append(',');
+			
+			sb.append("{\"href\":\"http:\\/\\/example").append(i % 300).append(".com\\/articles\\/").append(i)
+				.append("\",\"description\":\"Bookmark number ").append(i)
+				.append("\",\"extended\":\"\",\"meta\":\"").append(String.format("b%031x", (long) i * 2654435761L))
+				.append("\",\"hash\":\"").append(String.format("a%031x", (long) i * 2654435761L))
+				.append("\",\"time\":\"2015-06-01T12:00:00Z\",\"shared\":\"yes\",\"toread\":\"no\",\"tags\":\"")
+				.append(tags[i]).append("\"}\n");
+		}
+		return sb.append("]").toString();
+	}
+	
+	/**
+	 * Picks up to six tags, each with a chance inversely proportional to its rank in the
+	 * vocabulary.
+	 */
+	private static String tags(Random random) {
+		final double r = random.nextDouble();
+		final int count = r < 0.1 ? 0 : r < 0.45 ? 1 : r < 0.75 ? 2 : r < 0.9 ? 3 : 4 + random.nextInt(3);
+		final ArrayList<String> tags = new ArrayList<String>();
+		
+		double total = 0;
+		for(int k = 1; k <= VOCABULARY; k++) {
+			total += 1.0 / k;
+		}
+		
+		while(tags.size() < count) {
+			double pick = random.nextDouble() * total;
+			int rank = 1;
+			
+			while(rank < VOCABULARY && (pick -= 1.0 / rank) > 0) {
+				rank++;
+			}
+			
+			final String tag = "tag" + rank;
+			if(!tags.contains(tag))
+				tags.add(tag);
+		}
+		
+		final StringBuilder sb = new StringBuilder();
+		for(String tag : tags) {
+			if(sb.length() > 0)
+				sb.append(' ');
+			sb.append(tag);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+
+package com.pindroid.test.providers;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.pindroid.platform.BookmarkManager;
+import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.providers.BookmarkContentProvider;
+import com.pindroid.providers.BookmarkInserter;
+import com.pindroid.util.Md5Hash;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares inserting new bookmarks through {@link BookmarkInserter} with the ContentValues
+ * based inserts it replaced in the sync, in rows per second.  Both run in one transaction on
+ * an in-memory account database.  Results go to the log under the BookmarkIngestBenchmark tag.
+ */
+public class BookmarkIngestBenchmark {
+	
+	private static final String TAG = "BookmarkIngestBenchmark";
+	private static final String ACCOUNT = "testuser";
+	
+	private static final int BOOKMARKS = 5000;
+	private static final int WARMUP = 2;
+	private static final int RUNS = 5;
+	
+	private interface Ingester {
+		void ingest(SQLiteDatabase db, ArrayList<Bookmark> bookmarks);
+	}
+
+	@Test
+	public void benchmarkIngest() {
+		final ArrayList<Bookmark> bookmarks = new ArrayList<Bookmark>(BOOKMARKS);
+		
+		for(int i = 0; i < BOOKMARKS; i++) {
+			final String url = "http://www.example.com/page/" + i;
+			final Bookmark b = new Bookmark(url, "Example page " + i, "Notes for page " + i, 
+				"example tag" + (i % 50) + " tag" + (i % 7), i % 3 == 0, i % 5 == 0, 1133155569000l + i * 7919000l);
+			b.setHash(Md5Hash.md5(url));
+			b.setMeta(Md5Hash.md5(url + i));
+			bookmarks.add(b);
+		}
+		
+		run("content values", bookmarks, new Ingester() {
+			public void ingest(SQLiteDatabase db, ArrayList<Bookmark> bookmarks) {
+				for(Bookmark b : bookmarks) {
+					db.insert("bookmark", "", BookmarkManager.ToSyncedContentValues(b, ACCOUNT));
+				}
+			}
+		});
+		run("compiled statement", bookmarks, new Ingester() {
+			public void ingest(SQLiteDatabase db, ArrayList<Bookmark> bookmarks) {
+				final BookmarkInserter inserter = new BookmarkInserter(db, ACCOUNT);
+				try {
+					for(Bookmark b : bookmarks) {
+						inserter.insert(b);
+					}
+				} finally {
+					inserter.close();
+				}
+			}
+		});
+	}
+	
+	private static void run(String name, ArrayList<Bookmark> bookmarks, Ingester ingester) {
+		long best = Long.MAX_VALUE;
+		
+		for(int i = 0; i < WARMUP + RUNS; i++) {
+			final SQLiteDatabase db = SQLiteDatabase.create(null);
+			try {
+				BookmarkContentProvider.DatabaseHelper.createAccountTables(db);
+				
+				final long start = System.nanoTime();
+				db.beginTransaction();
+				try {
+					ingester.ingest(db, bookmarks);
+					db.setTransactionSuccessful();
+				} finally {
+					db.endTransaction();
+				}
+				final long elapsed = System.nanoTime() - start;
+				
+				assertEquals(bookmarks.size(), DatabaseUtils.queryNumEntries(db, "bookmark"));
+				
+				if(i >= WARMUP)
+					best = Math.min(best, elapsed);
+			} finally {
+				db.close();
+			}
+		}
+		
+		Log.i(TAG, String.format("%s: %d rows in %.1fms, %d rows/s", name, bookmarks.size(), 
+			best / 1000000.0, bookmarks.size() * 1000000000l / best));
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.test.util;
+
+import android.os.Debug;
+import android.util.Log;
+
+import com.pindroid.util.DateParser;
+import com.pindroid.util.IntUtils;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link DateParser} with the Calendar and SimpleDateFormat based implementation it
+ * replaced, which is copied below.  Results go to the log under the DateParserBenchmark tag.
+ */
+public class DateParserBenchmark {
+	
+	private static final String TAG = "DateParserBenchmark";
+	
+	private static final int TIMESTAMPS = 1000;
+	private static final int WARMUP = 3;
+	private static final int RUNS = 10;
+	
+	private interface Parser {
+		long parse(String s) throws Exception;
+	}
+
+	@Test
+	public void benchmarkParsing() throws Exception {
+		final String[] timestamps = new String[TIMESTAMPS];
+		final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		
+		for(int i = 0; i < TIMESTAMPS; i++) {
+			timestamps[i] = format.format(new Date(1133155569000l + i * 7919000l));
+			assertEquals(DateParser.parseTime(timestamps[i]), legacyParseTime(timestamps[i]));
+		}
+		
+		run("parseTime", timestamps, new Parser() {
+			public long parse(String s) {
+				return DateParser.parseTime(s);
+			}
+		});
+		run("legacy parseTime", timestamps, new Parser() {
+			public long parse(String s) {
+				return legacyParseTime(s);
+			}
+		});
+		run("parse", timestamps, new Parser() {
+			public long parse(String s) throws Exception {
+				return DateParser.parse(s).getTime();
+			}
+		});
+		run("legacy parse", timestamps, new Parser() {
+			public long parse(String s) throws Exception {
+				return legacyParse(s).getTime();
+			}
+		});
+	}
+	
+	private static void run(String name, String[] timestamps, Parser parser) throws Exception {
+		long sum = 0;
+		
+		for(int i = 0; i < WARMUP; i++) {
+			for(String s : timestamps) {
+				sum += parser.parse(s);
+			}
+		}
+		
+		System.gc();
+		Debug.resetThreadAllocCount();
+		Debug.resetThreadAllocSize();
+		Debug.startAllocCounting();
+		
+		final long start = System.nanoTime();
+		for(int i = 0; i < RUNS; i++) {
+			for(String s : timestamps) {
+				sum += parser.parse(s);
+			}
+		}
+		final long elapsed = System.nanoTime() - start;
+		
+		Debug.stopAllocCounting();
+		
+		final int calls = RUNS * timestamps.length;
+		Log.i(TAG, String.format("%s: %d ns, %.2f objects, %.1f bytes per call (checksum %d)", name, 
+			elapsed / calls, (double) Debug.getThreadAllocCount() / calls, 
+			(double) Debug.getThreadAllocSize() / calls, sum));
+	}
+	
+	private static final Calendar c = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+	
+	private static long legacyParseTime(String input) {
+		c.clear();
+		c.set(IntUtils.parseUInt(input.substring(0, 4)), 
+			IntUtils.parseUInt(input.substring(5, 7)) - 1, 
+			IntUtils.parseUInt(input.substring(8, 10)), 
+			IntUtils.parseUInt(input.substring(11, 13)), 
+			IntUtils.parseUInt(input.substring(14, 16)), 
+			IntUtils.parseUInt(input.substring(17, 19)));
+		
+		return c.getTimeInMillis();
+	}
+	
+	private static Date legacyParse(String input) throws java.text.ParseException {
+		SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssz");
+		
+		if(input.endsWith("Z")) {
+			input = input.substring(0, input.length() - 1) + "GMT-00:00";
+		} else {
+			int inset = 6;
+			
+			String s0 = input.substring(0, input.length() - inset);
+			String s1 = input.substring(input.length() - inset, input.length());
+			
+			input = s0 + "GMT" + s1;
+		}
+		
+		return df.parse(input);
+	}
+}
@@ -25,7 +25,9 @@ import com.pindroid.util.DateParser;
 
 import org.junit.Test;
 
+import java.text.ParseException;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -74,4 +76,81 @@ public class DateUtilsTest {
 		} catch (Exception e) {
 		}
 	}
+
+	@Test
+	public void testOffsetsAndFractions() throws ParseException{
+		
+		assertEquals(1133155569000l, DateParser.parse("2005-11-28T06:26:09+01:00").getTime());
+		assertEquals(1133155569000l, DateParser.parse("2005-11-28T00:56:09-0430").getTime());
+		assertEquals(1133155569000l, DateParser.parse("2005-11-28T08:26:09+03").getTime());
+		assertEquals(1133155569250l, DateParser.parse("2005-11-28T05:26:09.25Z").getTime());
+		assertEquals(1133155569123l, DateParser.parseTime("2005-11-28T05:26:09.123456"));
+		
+		// notes use a space instead of the T and leave out the zone
+		assertEquals(1133155569000l, DateParser.parseTime("2005-11-28 05:26:09"));
+		
+		assertEquals(0l, DateParser.parseTime("1970-01-01T00:00:00Z"));
+		assertEquals(951782400000l, DateParser.parseTime("2000-02-29T00:00:00Z"));
+		assertEquals(-2208988800000l, DateParser.parseTime("1900-01-01T00:00:00Z"));
+	}
+
+	@Test
+	public void testFormatting(){
+		
+		assertEquals("2005-11-28T05:26:09Z", DateParser.format(1133155569250l));
+		assertEquals("1970-01-01T00:00:00Z", DateParser.format(0l));
+		assertEquals("1969-12-31T23:59:59Z", DateParser.format(-1l));
+		assertEquals("2000-02-29T00:00:00Z", DateParser.format(951782400000l));
+		assertEquals("1900-01-01T00:00:00Z", DateParser.format(-2208988800000l));
+		
+		for(long time = -2208988800000l; time < 4102444800000l; time += 7919000l * 997) {
+			assertEquals(time / 1000 * 1000, DateParser.parseTime(DateParser.format(time)));
+		}
+	}
+
+	@Test
+	public void testMalformed(){
+		
+		String[] malformed = {"", "2005-11-28", "2005-13-28T05:26:09Z", "2005-02-29T05:26:09Z", 
+			"2005-11-28T24:26:09Z", "2005/11/28T05:26:09Z", "2005-11-28T05:26:09.Z", 
+			"2005-11-28T05:26:09+1", "2005-11-28T05:26:09 UTC", "2013-01-31T21:30:36+01:", 
+			"2013-01-31T21:30:36+01:3"};
+		
+		for(String s : malformed) {
+			try {
+				DateParser.parseTime(s);
+				fail("Expected date time parser to fail on " + s);
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testConcurrentParsing() throws InterruptedException{
+		
+		final AtomicInteger wrong = new AtomicInteger();
+		final Thread[] threads = new Thread[4];
+		
+		for(int t = 0; t < threads.length; t++) {
+			final int hour = t;
+			
+			threads[t] = new Thread() {
+				public void run() {
+					String s = "2005-11-28T0" + hour + ":26:09Z";
+					long expected = 1133155569000l + (hour - 5) * 3600000l;
+					
+					for(int i = 0; i < 10000; i++) {
+						if(DateParser.parseTime(s) != expected)
+							wrong.incrementAndGet();
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		
+		assertEquals(0, wrong.get());
+	}
 }
@@ -0,0 +1,139 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.test.xml;
+
+import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.xml.BookmarkStream;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BookmarkStreamTest {
+	
+	private String postsTest = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + 
+		"<posts user=\"maxpower47\">" + 
+		  "<post href=\"http://f-droid.org/wiki/page/com.pindroid\" time=\"2013-01-31T21:30:36Z\" description=\"com.pindroid - F-Droid\" extended=\"\" tag=\"pinboard pindroid\" hash=\"fafff755581363fa720dc8894212e522\" meta=\"f86784d71f229e3b8d061a09b5d60c6f\" toread=\"yes\" shared=\"no\" />" +
+		  "<post href=\"http://cybernetnews.com/pinboard-android/\" time=\"2013-01-31T21:29:30Z\" description=\"PinDroid: Pinboard for Android\" extended=\"\" tag=\"pindroid pinboard\" hash=\"a84f543a510d8218f16824cf059d33a8\" meta=\"e3f30dc2166dbf73cf1636095fd8bcb6\"    />" +
+		"</posts>";
+	
+	private String feedTest = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + 
+		"<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\" xmlns=\"http://purl.org/rss/1.0/\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\">" + 
+		  "<channel><title>Pinboard (popular)</title><link>https://pinboard.in/popular/</link><description></description></channel>" + 
+		  "<item rdf:about=\"http://example.com/one\">" + 
+		    "<title>First &amp; best</title>" + 
+		    "<dc:date>2013-01-31T21:30:36+00:00</dc:date>" + 
+		    "<link>http://example.com/one</link>" + 
+		    "<dc:creator>someone</dc:creator>" + 
+		    "<description> some notes </description>" + 
+		    "<dc:subject> tag1 tag2 </dc:subject>" + 
+		  "</item>" + 
+		  "<item rdf:about=\"http://example.com/two\">" + 
+		    "<title></title>" + 
+		    "<link>http://example.com/two</link>" + 
+		    "<dc:creator>someone else</dc:creator>" + 
+		  "</item>" + 
+		"</rdf:RDF>";
+
+	@Test
+	public void testPosts() throws ParseException, IOException{
+
+		InputStream is = new ByteArrayInputStream(postsTest.getBytes());
+		BookmarkStream stream = BookmarkStream.forPosts(is);
+		
+		Bookmark b1 = stream.next();
+		assertEquals("http://f-droid.org/wiki/page/com.pindroid", b1.getUrl());
+		assertEquals("com.pindroid - F-Droid", b1.getDescription());
+		assertEquals("", b1.getNotes());
+		assertEquals("fafff755581363fa720dc8894212e522", b1.getHash());
+		assertEquals("f86784d71f229e3b8d061a09b5d60c6f", b1.getMeta());
+		assertEquals("pinboard pindroid", b1.getTagString());
+		assertEquals(1359667836000l, b1.getTime());
+		assertTrue(b1.getToRead());
+		assertFalse(b1.getShared());
+		
+		Bookmark b2 = stream.next();
+		assertEquals("http://cybernetnews.com/pinboard-android/", b2.getUrl());
+		assertEquals(1359667770000l, b2.getTime());
+		assertFalse(b2.getToRead());
+		assertTrue(b2.getShared());
+		
+		assertNull(stream.next());
+		assertNull(stream.next());
+		
+		stream.close();
+	}
+
+	@Test
+	public void testFeed() throws ParseException, IOException{
+
+		InputStream is = new ByteArrayInputStream(feedTest.getBytes());
+		ArrayList<Bookmark> r = BookmarkStream.forFeed(is).readAll();
+		
+		assertEquals(2, r.size());
+		
+		Bookmark b1 = r.get(0);
+		assertEquals("http://example.com/one", b1.getUrl());
+		assertEquals("First & best", b1.getDescription());
+		assertEquals("some notes", b1.getNotes());
+		assertEquals("tag1 tag2", b1.getTagString());
+		assertEquals("someone", b1.getAccount());
+		assertEquals(1359667836000l, b1.getTime());
+		
+		// untitled items fall back to their url
+		Bookmark b2 = r.get(1);
+		assertEquals("http://example.com/two", b2.getDescription());
+		assertEquals("someone else", b2.getAccount());
+		
+		is.close();
+	}
+	
+	@Test
+	public void testStopEarly() throws ParseException, IOException{
+		
+		// everything after the first post is never read, so the broken tail goes unnoticed
+		String truncated = postsTest.substring(0, postsTest.indexOf("<post", postsTest.indexOf("<post") + 1) + 10);
+		BookmarkStream stream = BookmarkStream.forPosts(new ByteArrayInputStream(truncated.getBytes()));
+		
+		assertEquals("http://f-droid.org/wiki/page/com.pindroid", stream.next().getUrl());
+		
+		stream.close();
+	}
+	
+	@Test(expected = ParseException.class)
+	public void testTruncated() throws ParseException{
+		
+		String truncated = postsTest.substring(0, postsTest.length() - 20);
+		
+		BookmarkStream.forPosts(new ByteArrayInputStream(truncated.getBytes())).readAll();
+	}
+}
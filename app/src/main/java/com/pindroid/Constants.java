@@ -52,6 +52,10 @@ public class Constants {
     public static final String ACTION_READLATER = "com.pindroid.action.ReadLater";
     
     public static final String SYNC_MARKER_KEY = "com.pindroid.BookmarkSyncAdapter.marker";
+    public static final String SYNC_CHECKPOINT_KEY = "com.pindroid.BookmarkSyncAdapter.checkpoint";
+    public static final String SYNC_RECONCILE_KEY = "com.pindroid.BookmarkSyncAdapter.reconcile";
+    
+    public static final long SYNC_RECONCILE_INTERVAL = 24 * 60 * 60 * 1000; // ms
     
     public static final int HTTP_STATUS_TOO_MANY_REQUESTS = 429;
 
@@ -1,11 +1,38 @@
 package com.pindroid.application;
 
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.accounts.OnAccountsUpdateListener;
 import android.app.Application;
 
+import com.pindroid.client.AuthTokenCache;
+import com.pindroid.client.HttpClientFactory;
+import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.providers.BookmarkContentProvider;
+import com.pindroid.syncadapter.UploadScheduler;
+
 public class PindroidApplication extends Application {
 	
 	private String username = "";
 	
+	@Override
+	public void onCreate() {
+		super.onCreate();
+		
+		HttpClientFactory.init(this);
+		
+		// each account keeps its data in a database of its own, which goes when the account does,
+		// and cached auth tokens are dropped whenever the accounts change
+		AccountManager.get(this).addOnAccountsUpdatedListener(new OnAccountsUpdateListener() {
+			public void onAccountsUpdated(Account[] accounts) {
+				AuthTokenCache.clear();
+				getContentResolver().call(Bookmark.CONTENT_URI, BookmarkContentProvider.METHOD_DROP_REMOVED_ACCOUNTS, null, null);
+			}
+		}, null, false);
+		
+		UploadScheduler.start(this);
+	}
+	
 	public String getUsername(){
 		return username;
 	}
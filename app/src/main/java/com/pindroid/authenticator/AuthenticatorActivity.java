@@ -48,6 +48,7 @@ import android.widget.TextView;
 
 import com.pindroid.R;
 import com.pindroid.Constants;
+import com.pindroid.client.AuthTokenCache;
 import com.pindroid.client.PinboardApi;
 import com.pindroid.providers.BookmarkContentProvider;
 import com.pindroid.util.SyncUtils;
@@ -167,6 +168,7 @@ public class AuthenticatorActivity extends AppCompatActivity {
         Log.i(TAG, "finishConfirmCredentials()");
         final Account account = new Account(mUsername, Constants.ACCOUNT_TYPE);
         mAccountManager.setAuthToken(account, Constants.AUTHTOKEN_TYPE, authToken);
+        AuthTokenCache.put(mUsername, authToken);
         final Intent intent = new Intent();
         intent.putExtra(AccountManager.KEY_BOOLEAN_RESULT, authToken != null);
         intent.putExtra(AccountManager.KEY_AUTHTOKEN, authToken);
@@ -200,6 +202,7 @@ public class AuthenticatorActivity extends AppCompatActivity {
         }
         
         mAccountManager.setAuthToken(account, Constants.AUTHTOKEN_TYPE, authToken);
+        AuthTokenCache.put(mUsername, authToken);
         
         final Intent intent = new Intent();
         
@@ -0,0 +1,96 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+/**
+ * Spaces out requests to the Pinboard api so that callers running on several threads
+ * stay within a minimum interval between calls.
+ */
+public class ApiRateLimiter {
+	
+	public static final long DEFAULT_INTERVAL = 3 * 1000; // ms
+	
+	private long interval;
+	private long nextSlot = 0;
+	
+	public ApiRateLimiter(long interval) {
+		this.interval = interval;
+	}
+	
+	public synchronized long getInterval() {
+		return interval;
+	}
+	
+	public synchronized void setInterval(long interval) {
+		this.interval = interval;
+	}
+	
+	/**
+	 * Blocks until the caller may send its request.
+	 */
+	public void acquire() throws InterruptedException {
+		acquire(Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Blocks until the caller may send its request, unless that would take longer than
+	 * maxWait, in which case no slot is reserved.
+	 * 
+	 * @param maxWait The longest the caller is willing to wait, in milliseconds.
+	 * @return The time waited, or -1 if the next slot is further away than maxWait.
+	 */
+	public long acquire(long maxWait) throws InterruptedException {
+		long wait;
+		
+		synchronized(this) {
+			final long now = System.currentTimeMillis();
+			final long slot = Math.max(now, nextSlot);
+			wait = slot - now;
+			
+			if(wait > maxWait)
+				return -1;
+			
+			nextSlot = slot + interval;
+		}
+		
+		if(wait > 0) {
+			Thread.sleep(wait);
+		}
+		
+		return wait;
+	}
+	
+	/**
+	 * Returns how long a call made now would have to wait, in milliseconds.
+	 */
+	public synchronized long getWait() {
+		return Math.max(0, nextSlot - System.currentTimeMillis());
+	}
+	
+	/**
+	 * Makes sure no further request is sent for at least the given delay.
+	 */
+	public synchronized void defer(long delay) {
+		nextSlot = Math.max(nextSlot, System.currentTimeMillis() + delay);
+	}
+}
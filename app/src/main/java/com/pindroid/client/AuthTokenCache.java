@@ -0,0 +1,81 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.accounts.AuthenticatorException;
+import android.accounts.OperationCanceledException;
+
+import com.pindroid.Constants;
+
+/**
+ * Keeps the auth token of each account in memory, so that api calls do not make a binder
+ * call to the account manager for every request.  A token is dropped when the server rejects
+ * it, and all tokens are dropped when the accounts change.
+ */
+public class AuthTokenCache {
+	
+	private static final ConcurrentHashMap<String, String> sTokens = new ConcurrentHashMap<String, String>();
+	
+	/**
+	 * @return The auth token of the account, asking the account manager only if none is cached,
+	 * or null if the account has no token.
+	 */
+	public static String get(Account account, AccountManager am) 
+		throws OperationCanceledException, AuthenticatorException, IOException {
+		
+		String token = sTokens.get(account.name);
+		
+		if(token == null) {
+			token = am.blockingGetAuthToken(account, Constants.AUTHTOKEN_TYPE, true);
+			
+			if(token != null)
+				sTokens.put(account.name, token);
+		}
+		return token;
+	}
+	
+	/**
+	 * Stores a token just issued for an account.
+	 */
+	public static void put(String account, String token) {
+		if(token != null)
+			sTokens.put(account, token);
+		else sTokens.remove(account);
+	}
+	
+	/**
+	 * Drops the given token of an account, unless it has already been replaced by a newer one.
+	 */
+	public static void invalidate(String account, String token) {
+		sTokens.remove(account, token);
+	}
+	
+	public static void clear() {
+		sTokens.clear();
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import android.os.SystemClock;
+
+/**
+ * Collapses concurrent identical calls into one, and keeps successful results for a short
+ * time.  A caller asking for a key that is already being fetched waits for that fetch instead
+ * of starting its own, and a caller asking again within the time to live gets the stored
+ * result without any network work.  Failures are handed to every waiting caller but are not
+ * kept.  Only idempotent calls should be made through the cache.
+ */
+public class CallCache<V> {
+	
+	private final long mTtl;
+	private final LinkedHashMap<String, Entry<V>> mEntries;
+	private final HashMap<String, FutureTask<V>> mInFlight = new HashMap<String, FutureTask<V>>();
+	
+	/**
+	 * @param ttl Milliseconds a result is kept.
+	 * @param maxEntries The number of results kept, the least recently used are dropped first.
+	 */
+	public CallCache(long ttl, final int maxEntries) {
+		mTtl = ttl;
+		mEntries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * @return The result of the call for the given key, either stored, shared with a caller
+	 * already making it, or from making the call on this thread.
+	 * @throws Exception Whatever the call threw.
+	 */
+	public V get(String key, Callable<V> call) throws Exception {
+		FutureTask<V> task;
+		boolean leader = false;
+		
+		synchronized(this) {
+			final Entry<V> entry = mEntries.get(key);
+			
+			if(entry != null) {
+				if(SystemClock.elapsedRealtime() < entry.expires)
+					return entry.value;
+				mEntries.remove(key);
+			}
+			
+			task = mInFlight.get(key);
+			if(task == null) {
+				task = new FutureTask<V>(call);
+				mInFlight.put(key, task);
+				leader = true;
+			}
+		}
+		
+		if(leader) {
+			try {
+				task.run();
+			} finally {
+				synchronized(this) {
+					mInFlight.remove(key);
+					
+					try {
+						final V value = task.get();
+						if(isCacheable(value))
+							mEntries.put(key, new Entry<V>(value, SystemClock.elapsedRealtime() + mTtl));
+					} catch (ExecutionException e) {
+						// failures are not kept
+					}
+				}
+			}
+		}
+		
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if(cause instanceof Exception)
+				throw (Exception)cause;
+			throw (Error)cause;
+		}
+	}
+	
+	/**
+	 * Decides whether a successful result is worth keeping.  Results that stand for a soft
+	 * failure, such as an empty answer, can be left out so that the next caller tries again.
+	 */
+	protected boolean isCacheable(V value) {
+		return value != null;
+	}
+	
+	public synchronized void clear() {
+		mEntries.clear();
+	}
+	
+	private static class Entry<V> {
+		final V value;
+		final long expires;
+		
+		Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds the number of bytes read from a stream to a counter.
+ */
+public class CountingInputStream extends FilterInputStream {
+	
+	private final AtomicLong mCounter;
+	
+	public CountingInputStream(InputStream in, AtomicLong counter) {
+		super(in);
+		mCounter = counter;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		final int b = super.read();
+		if(b != -1)
+			mCounter.incrementAndGet();
+		return b;
+	}
+	
+	@Override
+	public int read(byte[] buffer, int offset, int count) throws IOException {
+		final int read = super.read(buffer, offset, count);
+		if(read > 0)
+			mCounter.addAndGet(read);
+		return read;
+	}
+	
+	@Override
+	public long skip(long count) throws IOException {
+		final long skipped = super.skip(count);
+		if(skipped > 0)
+			mCounter.addAndGet(skipped);
+		return skipped;
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+}
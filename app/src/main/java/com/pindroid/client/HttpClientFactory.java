@@ -19,44 +19,79 @@
  * USA
  */
 
+
 package com.pindroid.client;
 
-import org.apache.http.HttpVersion;
-import org.apache.http.client.HttpClient;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.params.ConnManagerParams;
-import org.apache.http.conn.scheme.PlainSocketFactory;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpConnectionParams;
-import org.apache.http.params.HttpParams;
-import org.apache.http.params.HttpProtocolParams;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
 
+import android.content.Context;
+import android.net.SSLCertificateSocketFactory;
+import android.net.SSLSessionCache;
+
+/**
+ * Provides the process wide http transport.  Connections are pooled and kept alive between
+ * requests, so consecutive api calls, feed fetches and title lookups reuse an open connection
+ * instead of paying a new tcp and tls handshake each time.  Callers must close every response
+ * so that its connection returns to the pool.
+ */
 public class HttpClientFactory {
 	
-	public static final int REGISTRATION_TIMEOUT = 30 * 1000; // ms
-	
-	public static HttpClient getThreadSafeClient() {
-	    
-	    HttpParams params = new BasicHttpParams();
-	    ConnManagerParams.setMaxTotalConnections(params, 100);
-	    HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
-	    
-        HttpConnectionParams.setConnectionTimeout(params, REGISTRATION_TIMEOUT);
-        HttpConnectionParams.setSoTimeout(params, REGISTRATION_TIMEOUT);
-        ConnManagerParams.setTimeout(params, REGISTRATION_TIMEOUT);
-        
-        SchemeRegistry schemeRegistry = new SchemeRegistry();
-        schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
-        schemeRegistry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
-        
-        ClientConnectionManager mgr = new ThreadSafeClientConnManager(params, schemeRegistry);
-        HttpClient client = new DefaultHttpClient(mgr, params);
-
-	    return client;
-	} 
-}
\ No newline at end of file
+	public static final int CONNECT_TIMEOUT = 30 * 1000; // ms
+	public static final int READ_TIMEOUT = 30 * 1000; // ms
+	
+	private static Context sContext = null;
+	private static HttpTransport sTransport = null;
+	
+	static final AtomicLong sConnectionsOpened = new AtomicLong();
+	static final AtomicLong sSecureRequests = new AtomicLong();
+	
+	/**
+	 * Lets the transport keep tls sessions in the application's session cache, so that new
+	 * connections to a host resume an earlier session, even one from a previous process.
+	 * Must be called before the transport is first used to take effect.
+	 */
+	public static synchronized void init(Context context) {
+		sContext = context.getApplicationContext();
+	}
+	
+	/**
+	 * @return The transport for all network calls, which records each call in {@link NetworkStats}.
+	 */
+	public static synchronized HttpTransport getTransport() {
+		if(sTransport == null)
+			sTransport = new InstrumentedTransport(new UrlConnectionTransport(getSslSocketFactory()));
+		
+	    return sTransport;
+	}
+	
+	/**
+	 * Replaces the transport used by all network calls, for instance with one directed at a
+	 * local stand-in server.  Passing null restores the default transport.
+	 */
+	public static synchronized void setTransport(HttpTransport transport) {
+		sTransport = transport != null ? new InstrumentedTransport(transport) : null;
+	}
+	
+	/**
+	 * @return The number of tls connections the transport has opened.
+	 */
+	public static long getConnectionsOpened() {
+		return sConnectionsOpened.get();
+	}
+	
+	/**
+	 * @return The number of https requests sent over a connection kept alive from an earlier request.
+	 */
+	public static long getConnectionsReused() {
+		return Math.max(0, sSecureRequests.get() - sConnectionsOpened.get());
+	}
+	
+	private static SSLSocketFactory getSslSocketFactory() {
+		if(sContext != null)
+			return SSLCertificateSocketFactory.getDefault(CONNECT_TIMEOUT, new SSLSessionCache(sContext));
+		else return HttpsURLConnection.getDefaultSSLSocketFactory();
+	}
+}
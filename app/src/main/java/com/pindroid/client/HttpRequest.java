@@ -0,0 +1,180 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.util.Base64;
+
+/**
+ * A GET request to be sent by an {@link HttpTransport}.  A request can be cancelled from
+ * another thread while it is waiting for its response.
+ */
+public class HttpRequest {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private final String mUrl;
+	private String mEndpoint = "other";
+	private String mAccount = null;
+	private boolean mRetry = false;
+	private final LinkedHashMap<String, String> mHeaders = new LinkedHashMap<String, String>();
+	private int mConnectTimeout = HttpClientFactory.CONNECT_TIMEOUT;
+	private int mReadTimeout = HttpClientFactory.READ_TIMEOUT;
+	private boolean mGzip = false;
+	
+	private volatile boolean mCancelled = false;
+	private volatile Closeable mConnection = null;
+	
+	public HttpRequest(String url) {
+		mUrl = url;
+	}
+	
+	public String getUrl() {
+		return mUrl;
+	}
+	
+	/**
+	 * @return The name under which the request is measured in {@link NetworkStats}.
+	 */
+	public String getEndpoint() {
+		return mEndpoint;
+	}
+	
+	/**
+	 * Names the endpoint the request is measured under.  The name must not contain
+	 * secrets, and should not vary with the request's parameters.
+	 */
+	public void setEndpoint(String endpoint) {
+		mEndpoint = endpoint;
+	}
+	
+	/**
+	 * @return The account the request is made for, or null if it is not an api call.
+	 */
+	public String getAccount() {
+		return mAccount;
+	}
+	
+	/**
+	 * Adds the request to the traffic totals of an account, see {@link NetworkStats#getAccountTotals}.
+	 */
+	public void setAccount(String account) {
+		mAccount = account;
+	}
+	
+	public boolean isRetry() {
+		return mRetry;
+	}
+	
+	/**
+	 * Marks the request as sending a failed or throttled request again.
+	 */
+	public void setRetry(boolean retry) {
+		mRetry = retry;
+	}
+	
+	public Map<String, String> getHeaders() {
+		return mHeaders;
+	}
+	
+	public void setHeader(String name, String value) {
+		mHeaders.put(name, value);
+	}
+	
+	/**
+	 * Sends the given credentials with the request, using basic authentication.
+	 */
+	public void setCredentials(String username, String password) {
+		final byte[] credentials = (username + ":" + password).getBytes(UTF_8);
+		setHeader("Authorization", "Basic " + Base64.encodeToString(credentials, Base64.NO_WRAP));
+	}
+	
+	public int getConnectTimeout() {
+		return mConnectTimeout;
+	}
+	
+	public int getReadTimeout() {
+		return mReadTimeout;
+	}
+	
+	/**
+	 * @param connectTimeout Milliseconds to wait for a connection.
+	 * @param readTimeout Milliseconds to wait for each read of the response.
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout) {
+		mConnectTimeout = connectTimeout;
+		mReadTimeout = readTimeout;
+	}
+	
+	public boolean isGzip() {
+		return mGzip;
+	}
+	
+	/**
+	 * Asks the server for a gzip compressed response.  The body handed to the caller is
+	 * always decompressed.
+	 */
+	public void setGzip(boolean gzip) {
+		mGzip = gzip;
+	}
+	
+	public boolean isCancelled() {
+		return mCancelled;
+	}
+	
+	/**
+	 * Aborts the request.  A transport blocked on it throws an {@link InterruptedIOException}.
+	 */
+	public void cancel() {
+		mCancelled = true;
+		
+		final Closeable connection = mConnection;
+		if(connection != null) {
+			try {
+				connection.close();
+			} catch (IOException e) {
+				// the request is being abandoned anyway
+			}
+		}
+	}
+	
+	/**
+	 * Called by a transport with a handle that aborts the connection carrying the request.
+	 * 
+	 * @throws InterruptedIOException If the request has already been cancelled.
+	 */
+	public void attach(Closeable connection) throws InterruptedIOException {
+		mConnection = connection;
+		
+		if(mCancelled) {
+			cancel();
+			throw new InterruptedIOException("Request cancelled: " + mUrl);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The response to an {@link HttpRequest}.  The body is streamed from the connection, and must
+ * be closed once it is no longer needed.
+ */
+public class HttpResponse implements Closeable {
+	
+	private final int mStatusCode;
+	private final Map<String, List<String>> mHeaders;
+	private final InputStream mBody;
+	final AtomicLong mTransferred;
+	
+	public HttpResponse(int statusCode, Map<String, List<String>> headers, InputStream body) {
+		this(statusCode, headers, body, null);
+	}
+	
+	/**
+	 * @param transferred Counts the body bytes received over the network, or null if the
+	 * transport cannot tell.
+	 */
+	public HttpResponse(int statusCode, Map<String, List<String>> headers, InputStream body, AtomicLong transferred) {
+		mStatusCode = statusCode;
+		mHeaders = headers != null ? headers : Collections.<String, List<String>>emptyMap();
+		mBody = body;
+		mTransferred = transferred;
+	}
+	
+	public int getStatusCode() {
+		return mStatusCode;
+	}
+	
+	public Map<String, List<String>> getHeaders() {
+		return mHeaders;
+	}
+	
+	/**
+	 * @return The first value of the named header, regardless of case, or null if it is absent.
+	 */
+	public String getHeader(String name) {
+		for(Map.Entry<String, List<String>> e : mHeaders.entrySet()) {
+			if(name.equalsIgnoreCase(e.getKey()) && e.getValue() != null && !e.getValue().isEmpty())
+				return e.getValue().get(0);
+		}
+		return null;
+	}
+	
+	public InputStream getBody() {
+		return mBody;
+	}
+	
+	/**
+	 * @return The number of body bytes received over the network so far, before decompression,
+	 * or -1 if unknown.
+	 */
+	public long getTransferredBytes() {
+		return mTransferred != null ? mTransferred.get() : -1;
+	}
+	
+	/**
+	 * Reads the whole body as text and closes it.
+	 */
+	public String getBodyAsString() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		
+		try {
+			int read;
+			while((read = mBody.read(buffer)) != -1)
+				out.write(buffer, 0, read);
+		} finally {
+			close();
+		}
+		final String charset = getCharset();
+		return out.toString(charset != null ? charset : "UTF-8");
+	}
+	
+	/**
+	 * @return The charset declared in the Content-Type header, or null if there is none.
+	 */
+	public String getCharset() {
+		final String contentType = getHeader("Content-Type");
+		
+		if(contentType != null) {
+			for(String param : contentType.split(";")) {
+				param = param.trim();
+				if(param.regionMatches(true, 0, "charset=", 0, 8))
+					return param.substring(8).replace("\"", "").trim();
+			}
+		}
+		return null;
+	}
+	
+	public void close() throws IOException {
+		mBody.close();
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.io.IOException;
+
+/**
+ * Sends http requests.  The transport in use is provided by {@link HttpClientFactory#getTransport()},
+ * and may be replaced, for instance by one talking to a local stand-in server in tests.
+ */
+public interface HttpTransport {
+	
+	/**
+	 * Sends a GET request and waits for the response headers.  The body of the response is
+	 * streamed, and must be closed so that the connection can be reused.
+	 * 
+	 * @throws java.io.InterruptedIOException If the request was cancelled.
+	 * @throws IOException If the request could not be sent or the response could not be read.
+	 */
+	HttpResponse execute(HttpRequest request) throws IOException;
+}
@@ -0,0 +1,84 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.os.SystemClock;
+
+/**
+ * Wraps a transport, recording the latency, status, body size and retries of every request
+ * in the {@link NetworkStats} of its endpoint, and of its account if it has one.  This is
+ * the one place network traffic is counted.
+ */
+public class InstrumentedTransport implements HttpTransport {
+	
+	private final HttpTransport mTransport;
+	
+	public InstrumentedTransport(HttpTransport transport) {
+		mTransport = transport;
+	}
+	
+	public HttpResponse execute(HttpRequest request) throws IOException {
+		final NetworkStats[] stats = request.getAccount() != null 
+			? new NetworkStats[]{NetworkStats.get(request.getEndpoint()), NetworkStats.getAccountTotals(request.getAccount())}
+			: new NetworkStats[]{NetworkStats.get(request.getEndpoint())};
+		final long start = SystemClock.elapsedRealtime();
+		final HttpResponse response;
+		
+		if(request.isRetry()) {
+			for(NetworkStats s : stats)
+				s.recordRetry();
+		}
+		
+		try {
+			response = mTransport.execute(request);
+		} catch (IOException e) {
+			for(NetworkStats s : stats)
+				s.recordFailure(SystemClock.elapsedRealtime() - start);
+			throw e;
+		}
+		
+		for(NetworkStats s : stats)
+			s.recordResponse(response.getStatusCode(), SystemClock.elapsedRealtime() - start);
+		
+		final AtomicLong bytes = new AtomicLong();
+		final AtomicBoolean closed = new AtomicBoolean();
+		
+		return new HttpResponse(response.getStatusCode(), response.getHeaders(), 
+			new CountingInputStream(response.getBody(), bytes) {
+				@Override
+				public void close() throws IOException {
+					super.close();
+					
+					if(closed.compareAndSet(false, true)) {
+						final long transferred = response.getTransferredBytes();
+						for(NetworkStats s : stats)
+							s.recordBytes(transferred >= 0 ? transferred : bytes.get(), bytes.get());
+					}
+				}
+			}, response.mTransferred);
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Network measurements of one endpoint: request and failure counts, status codes, a latency
+ * histogram, bytes transferred before and after decompression, and retries.  Measurements are
+ * kept per process, and are reported by {@link #dump()}.  The api calls of each account are
+ * also added up across endpoints, for the sync history.
+ */
+public class NetworkStats {
+	
+	/**
+	 * Upper bounds, in milliseconds, of the latency histogram buckets.  Slower responses fall in
+	 * an extra, unbounded bucket.
+	 */
+	static final long[] LATENCY_BUCKETS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+	
+	private static final TreeMap<String, NetworkStats> sEndpoints = new TreeMap<String, NetworkStats>();
+	private static final HashMap<String, NetworkStats> sAccounts = new HashMap<String, NetworkStats>();
+	
+	private static final Pattern AUTH_TOKEN = Pattern.compile("(auth_token=)[^&]*");
+	private static final Pattern SECRET = Pattern.compile("(/secret:)[^/?]*");
+	
+	private final String mEndpoint;
+	private long mRequests = 0;
+	private long mFailures = 0;
+	private long mRetries = 0;
+	private long mCompressedBytes = 0;
+	private long mBytes = 0;
+	private long mTotalLatency = 0;
+	private long mMaxLatency = 0;
+	private final long[] mHistogram = new long[LATENCY_BUCKETS.length + 1];
+	private final TreeMap<Integer, Long> mStatusCodes = new TreeMap<Integer, Long>();
+	
+	private NetworkStats(String endpoint) {
+		mEndpoint = endpoint;
+	}
+	
+	public static synchronized NetworkStats get(String endpoint) {
+		NetworkStats stats = sEndpoints.get(endpoint);
+		if(stats == null) {
+			stats = new NetworkStats(endpoint);
+			sEndpoints.put(endpoint, stats);
+		}
+		return stats;
+	}
+	
+	/**
+	 * @return The totals of every api call made for an account.  They are not reported by
+	 * {@link #dump()} nor cleared by {@link #reset()}, so that a sync can read them before and
+	 * after it runs.
+	 */
+	public static synchronized NetworkStats getAccountTotals(String account) {
+		NetworkStats stats = sAccounts.get(account);
+		if(stats == null) {
+			stats = new NetworkStats(account);
+			sAccounts.put(account, stats);
+		}
+		return stats;
+	}
+	
+	public static synchronized void reset() {
+		sEndpoints.clear();
+	}
+	
+	/**
+	 * @return The number of requests sent, including retries.
+	 */
+	public synchronized long getRequests() {
+		return mRequests;
+	}
+	
+	public synchronized long getRetries() {
+		return mRetries;
+	}
+	
+	/**
+	 * @return Response bytes as received over the network.
+	 */
+	public synchronized long getCompressedBytes() {
+		return mCompressedBytes;
+	}
+	
+	/**
+	 * @return Response bytes after gzip decoding.
+	 */
+	public synchronized long getBytes() {
+		return mBytes;
+	}
+	
+	/**
+	 * Records a response, with the time taken to receive its headers.
+	 */
+	public synchronized void recordResponse(int statusCode, long latency) {
+		final Long count = mStatusCodes.get(statusCode);
+		mStatusCodes.put(statusCode, count == null ? 1 : count + 1);
+		recordLatency(latency);
+	}
+	
+	/**
+	 * Records a request that got no response.
+	 */
+	public synchronized void recordFailure(long latency) {
+		mFailures++;
+		recordLatency(latency);
+	}
+	
+	public synchronized void recordRetry() {
+		mRetries++;
+	}
+	
+	/**
+	 * Records the size of a response body, as transferred and after decompression.
+	 */
+	public synchronized void recordBytes(long compressedBytes, long bytes) {
+		mCompressedBytes += compressedBytes;
+		mBytes += bytes;
+	}
+	
+	private void recordLatency(long latency) {
+		mRequests++;
+		mTotalLatency += latency;
+		mMaxLatency = Math.max(mMaxLatency, latency);
+		
+		int bucket = 0;
+		while(bucket < LATENCY_BUCKETS.length && latency > LATENCY_BUCKETS[bucket])
+			bucket++;
+		mHistogram[bucket]++;
+	}
+	
+	/**
+	 * @return The upper bound of the histogram bucket holding the given fraction of requests,
+	 * or the slowest latency seen if that falls in the unbounded bucket.
+	 */
+	synchronized long getPercentile(double fraction) {
+		final long rank = (long)Math.ceil(mRequests * fraction);
+		long seen = 0;
+		
+		for(int i = 0; i < LATENCY_BUCKETS.length; i++) {
+			seen += mHistogram[i];
+			if(seen >= rank)
+				return LATENCY_BUCKETS[i];
+		}
+		return mMaxLatency;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		final StringBuilder sb = new StringBuilder(mEndpoint);
+		
+		sb.append(": requests=").append(mRequests);
+		sb.append(", failures=").append(mFailures);
+		sb.append(", retries=").append(mRetries);
+		
+		sb.append(", status=");
+		boolean first = true;
+		for(Map.Entry<Integer, Long> e : mStatusCodes.entrySet()) {
+			if(!first)
+				sb.append('/');
+			sb.append(e.getKey()).append('x').append(e.getValue());
+			first = false;
+		}
+		
+		if(mRequests > 0) {
+			sb.append(", latency avg=").append(mTotalLatency / mRequests).append("ms");
+			sb.append(" p50<=").append(getPercentile(0.5)).append("ms");
+			sb.append(" p90<=").append(getPercentile(0.9)).append("ms");
+			sb.append(" max=").append(mMaxLatency).append("ms");
+		}
+		
+		sb.append(", bytes=").append(mCompressedBytes).append('/').append(mBytes);
+		return sb.toString();
+	}
+	
+	/**
+	 * @return A report of every endpoint called since the process started, one per line.
+	 */
+	public static synchronized String dump() {
+		final StringBuilder sb = new StringBuilder();
+		
+		for(NetworkStats stats : sEndpoints.values())
+			sb.append(stats).append('\n');
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Removes the auth token and feed secret from a url, so that it can be logged.
+	 */
+	public static String redact(String url) {
+		if(url == null)
+			return null;
+		
+		url = AUTH_TOKEN.matcher(url).replaceAll("$1REDACTED");
+		return SECRET.matcher(url).replaceAll("$1REDACTED");
+	}
+}
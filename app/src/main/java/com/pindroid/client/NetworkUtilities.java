@@ -22,22 +22,15 @@
 package com.pindroid.client;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.URLEncoder;
+import java.util.concurrent.Callable;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.Credentials;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.protocol.HTTP;
-import org.apache.http.util.EntityUtils;
 import org.json.JSONObject;
 
 import com.pindroid.Constants;
 import com.pindroid.providers.ArticleContent.Article;
+import com.pindroid.util.TitleExtractor;
 
 import android.net.Uri;
 import android.util.Log;
@@ -50,9 +43,15 @@ public class NetworkUtilities {
 
     private static final String SCHEME = "https";
     private static final String PINBOARD_AUTHORITY = "api.pinboard.in";
-    private static final int PORT = 443;
- 
-    private static final AuthScope SCOPE = new AuthScope(PINBOARD_AUTHORITY, PORT);
+    
+    // page titles, shared by the lookups the bookmark editor and the save service start at once
+    private static final CallCache<String> TITLE_CACHE = new CallCache<String>(10 * 60 * 1000, 32) {
+    	@Override
+    	protected boolean isCacheable(String title) {
+    		// an empty title means the lookup failed
+    		return title != null && title.length() > 0;
+    	}
+    };
 
     /**
      * Attempts to authenticate to Pinboard using a legacy Pinboard account.
@@ -73,24 +72,22 @@ public class NetworkUtilities {
         builder.appendEncodedPath("v1/posts/update");
         Uri uri = builder.build();
 
-        HttpGet request = new HttpGet(String.valueOf(uri));
-
-        DefaultHttpClient client = (DefaultHttpClient)HttpClientFactory.getThreadSafeClient();
-        
-        CredentialsProvider provider = client.getCredentialsProvider();
-        Credentials credentials = new UsernamePasswordCredentials(username, password);
-        provider.setCredentials(SCOPE, credentials);
+        HttpRequest request = new HttpRequest(String.valueOf(uri));
+        request.setEndpoint("v1/posts/update");
+        request.setCredentials(username, password);
 
         try {
-            resp = client.execute(request);
-            if (resp.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+            resp = HttpClientFactory.getTransport().execute(request);
+            resp.close();
+            
+            if (resp.getStatusCode() == HttpURLConnection.HTTP_OK) {
                 if (Log.isLoggable(TAG, Log.VERBOSE)) {
                     Log.v(TAG, "Successful authentication");
                 }
                 return true;
             } else {
                 if (Log.isLoggable(TAG, Log.VERBOSE)) {
-                    Log.v(TAG, "Error authenticating" + resp.getStatusLine());
+                    Log.v(TAG, "Error authenticating" + resp.getStatusCode());
                 }
                 return false;
             }
@@ -119,30 +116,53 @@ public class NetworkUtilities {
     		if(!url.startsWith("http")){
     			url = "http://" + url;
     		}
-	
-	    	HttpResponse resp = null;
-	    	HttpGet post = null;
-	    	
-	    	try {
-				post = new HttpGet(url.replace("|", "%7C"));
-	
-				post.setHeader("User-Agent", "Mozilla/5.0");
-	
-				resp = HttpClientFactory.getThreadSafeClient().execute(post);
-
-		    	if (resp.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-		    		String response = EntityUtils.toString(resp.getEntity(), HTTP.UTF_8);
-		    		int start = response.indexOf("<title>") + 7;
-		    		int end = response.indexOf("</title>", start + 1);
-		    		String title = response.substring(start, end);
-		    		return title;
-		    	} else return "";
+    		
+    		final String pageUrl = url;
+    		
+    		try {
+				return TITLE_CACHE.get(pageUrl, new Callable<String>() {
+					public String call() {
+						return fetchWebpageTitle(pageUrl);
+					}
+				});
 			} catch (Exception e) {
 				return "";
 			}
     	} else return "";
     }
     
+    private static String fetchWebpageTitle(String url) {
+	
+    	HttpResponse resp = null;
+    	HttpRequest post = null;
+    	
+    	try {
+			post = new HttpRequest(url.replace("|", "%7C"));
+			post.setEndpoint("title");
+
+			post.setHeader("User-Agent", "Mozilla/5.0");
+
+			resp = HttpClientFactory.getTransport().execute(post);
+
+	    	if (resp.getStatusCode() == HttpURLConnection.HTTP_OK) {
+	    		// closing early drops the connection, which is cheaper than reading the rest of a large page
+	    		return TitleExtractor.extract(resp.getBody(), resp.getCharset());
+	    	} else {
+	    		return "";
+	    	}
+		} catch (Exception e) {
+			return "";
+		} finally {
+			if(resp != null) {
+				try {
+					resp.close();
+				} catch (IOException e) {
+					// nothing left to read
+				}
+			}
+		}
+    }
+    
     /**
      * Gets the title of a web page.
      * 
@@ -158,24 +178,27 @@ public class NetworkUtilities {
     		}
 	
 	    	HttpResponse resp = null;
-	    	HttpGet post = null;
+	    	HttpRequest post = null;
 	    	
 	    	try {
-				post = new HttpGet(Constants.TEXT_EXTRACTOR_URL + URLEncoder.encode(url, "UTF-8") + "&format=json");
+				post = new HttpRequest(Constants.TEXT_EXTRACTOR_URL + URLEncoder.encode(url, "UTF-8") + "&format=json");
+				post.setEndpoint("article");
 	
 				post.setHeader("User-Agent", "Mozilla/5.0");
 	
-				resp = HttpClientFactory.getThreadSafeClient().execute(post);
+				resp = HttpClientFactory.getTransport().execute(post);
 				
 		        
-		        final int statusCode = resp.getStatusLine().getStatusCode();
+		        final int statusCode = resp.getStatusCode();
 				
-		    	if (statusCode == HttpStatus.SC_OK) {		    		
-		    		final String response = EntityUtils.toString(resp.getEntity());
+		    	if (statusCode == HttpURLConnection.HTTP_OK) {		    		
+		    		final String response = resp.getBodyAsString();
 		    		
 		    		final JSONObject article = new JSONObject(response);
 		    		
 		    		return Article.valueOf(article);
+		    	} else {
+		    		resp.close();
 		    	}
 			} catch (Exception e) {
 				return null;
@@ -23,22 +23,12 @@ package com.pindroid.client;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.TreeMap;
-import java.util.zip.GZIPInputStream;
-
-import org.apache.http.Header;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.AuthenticationException;
-import org.apache.http.auth.Credentials;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.DefaultHttpClient;
+import java.util.concurrent.Callable;
 
 import android.accounts.Account;
 import android.accounts.AccountManager;
@@ -47,10 +37,17 @@ import android.net.Uri;
 import android.util.Log;
 
 import com.pindroid.Constants;
+import com.pindroid.json.JsonBookmarkParser;
+import com.pindroid.json.JsonNoteListParser;
+import com.pindroid.json.JsonNoteParser;
+import com.pindroid.json.JsonTagParser;
+import com.pindroid.json.JsonUpdateParser;
 import com.pindroid.providers.BookmarkContent.Bookmark;
 import com.pindroid.providers.NoteContent.Note;
 import com.pindroid.providers.TagContent.Tag;
-import com.pindroid.xml.SaxBookmarkParser;
+import com.pindroid.util.DateParser;
+import com.pindroid.util.SettingsHelper;
+import com.pindroid.xml.BookmarkStream;
 import com.pindroid.xml.SaxNoteListParser;
 import com.pindroid.xml.SaxNoteParser;
 import com.pindroid.xml.SaxResultParser;
@@ -66,7 +63,6 @@ public class PinboardApi {
     public static final String FETCH_TAGS_URI = "v1/tags/get";
     public static final String FETCH_SUGGESTED_TAGS_URI = "v1/posts/suggest";
     public static final String FETCH_BOOKMARKS_URI = "v1/posts/all";
-    public static final String FETCH_CHANGED_BOOKMARKS_URI = "v1/posts/all";
     public static final String FETCH_BOOKMARK_URI = "v1/posts/get";
     public static final String LAST_UPDATE_URI = "v1/posts/update";
     public static final String DELETE_BOOKMARK_URI = "v1/posts/delete";
@@ -77,9 +73,12 @@ public class PinboardApi {
   
     private static final String SCHEME = "https";
     private static final String PINBOARD_AUTHORITY = "api.pinboard.in";
-    private static final int PORT = 443;
     
-    private static final AuthScope SCOPE = new AuthScope(PINBOARD_AUTHORITY, PORT);
+    // attempts made at a call that keeps being answered with 429 before giving up
+    private static final int MAX_ATTEMPTS = 3;
+    
+    // suggestions for the url being edited, shared by the requests the editor fires at once
+    private static final CallCache<ArrayList<Tag>> SUGGESTED_TAGS_CACHE = new CallCache<ArrayList<Tag>>(5 * 60 * 1000, 32);
 
     /**
      * Attempts to authenticate to Pinboard using a legacy Pinboard account.
@@ -101,34 +100,30 @@ public class PinboardApi {
         builder.appendEncodedPath(AUTH_TOKEN_URI);
         Uri uri = builder.build();
 
-        HttpGet request = new HttpGet(String.valueOf(uri));
-
-        DefaultHttpClient client = (DefaultHttpClient)HttpClientFactory.getThreadSafeClient();
-        
-        CredentialsProvider provider = client.getCredentialsProvider();
-        Credentials credentials = new UsernamePasswordCredentials(username, password);
-        provider.setCredentials(SCOPE, credentials);
+        HttpRequest request = new HttpRequest(String.valueOf(uri));
+        request.setEndpoint(AUTH_TOKEN_URI);
+        request.setCredentials(username, password);
 
         try {
-            resp = client.execute(request);
-            if (resp.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-            	
-        		final HttpEntity entity = resp.getEntity();
+            resp = HttpClientFactory.getTransport().execute(request);
+            
+            if (resp.getStatusCode() == HttpURLConnection.HTTP_OK) {
         		
-        		InputStream instream = entity.getContent();		
+        		InputStream instream = resp.getBody();		
             	SaxTokenParser parser = new SaxTokenParser(instream);
             	PinboardAuthToken token = parser.parse();
             	instream.close();
 
                 if (Log.isLoggable(TAG, Log.VERBOSE)) {
                     Log.v(TAG, "Successful authentication");
-                    Log.v(TAG, "AuthToken: " + token.getToken());
                 }
                 
                 return token.getToken();
             } else {
+                resp.close();
+                
                 if (Log.isLoggable(TAG, Log.VERBOSE)) {
-                    Log.v(TAG, "Error authenticating" + resp.getStatusLine());
+                    Log.v(TAG, "Error authenticating" + resp.getStatusCode());
                 }
                 return null;
             }
@@ -167,10 +162,11 @@ public class PinboardApi {
 
     	InputStream responseStream = null;
     	TreeMap<String, String> params = new TreeMap<String, String>();
+    	final boolean json = requestJson(params, context);
     	
     	responseStream = PinboardApiCall(LAST_UPDATE_URI, params, account, context);
-    	SaxUpdateParser parser = new SaxUpdateParser(responseStream);
-    	Update update = parser.parse();
+    	Update update = json ? new JsonUpdateParser(responseStream).parse() 
+    		: new SaxUpdateParser(responseStream).parse();
     	responseStream.close();
 
         return update;
@@ -300,12 +296,13 @@ public class PinboardApi {
     	}
     	params.put("meta", "yes");
     	params.put("hashes", hashString);
+    	final boolean json = requestJson(params, context);
 
     	responseStream = PinboardApiCall(url, params, account, context);
-    	SaxBookmarkParser parser = new SaxBookmarkParser(responseStream);
     	
     	try {
-			bookmarkList = parser.parse();
+			bookmarkList = json ? new JsonBookmarkParser(responseStream).parse() 
+				: BookmarkStream.forPosts(responseStream).readAll();
 		} catch (ParseException e) {
             Log.e(TAG, "Server error in fetching bookmark list");
             throw new IOException();
@@ -350,8 +347,41 @@ public class PinboardApi {
     public static ArrayList<Bookmark> getAllBookmarks(String tagName, int start, int count, Account account, Context context) 
 	throws IOException, AuthenticationException, TooManyRequestsException, PinboardException {
     	ArrayList<Bookmark> bookmarkList = new ArrayList<Bookmark>();
+    	final boolean json = SettingsHelper.getUseJsonApi(context);
+
+    	InputStream responseStream = getAllBookmarksStream(tagName, start, count, json, account, context);
+    	
+    	try {
+			bookmarkList = json ? new JsonBookmarkParser(responseStream).parse() 
+				: BookmarkStream.forPosts(responseStream).readAll();
+		} catch (ParseException e) {
+            Log.e(TAG, "Server error in fetching bookmark list");
+            throw new IOException();
+		}
+
+        responseStream.close();
+        
+        return bookmarkList;
+    }
+    
+    /**
+     * Requests a page of the users bookmarks from Pinboard, without parsing the response.
+     * 
+     * @param tagname If specified, will only retrieve bookmarks with a specific tag.
+     * @param start Bookmark number to start from.
+     * @param count Number of results to retrieve.
+     * @param json Whether to ask for the response in json rather than xml.
+     * @param account The account being synced.
+     * @param context The current application context.
+     * @return The response stream, which the caller is responsible for closing.
+     * @throws IOException If a server error was encountered.
+     * @throws AuthenticationException If an authentication error was encountered.
+     * @throws TooManyRequestsException 
+     * @throws PinboardException 
+     */
+    public static InputStream getAllBookmarksStream(String tagName, int start, int count, boolean json, Account account, Context context) 
+	throws IOException, AuthenticationException, TooManyRequestsException, PinboardException {
 
-    	InputStream responseStream = null;
     	TreeMap<String, String> params = new TreeMap<String, String>();
     	String url = FETCH_BOOKMARKS_URI;
 
@@ -368,20 +398,54 @@ public class PinboardApi {
     	}
     	
     	params.put("meta", "yes");
+    	
+    	if(json){
+    		params.put("format", "json");
+    	}
 
-    	responseStream = PinboardApiCall(url, params, account, context);
-    	SaxBookmarkParser parser = new SaxBookmarkParser(responseStream);
+    	return PinboardApiCall(url, params, account, context);
+    }
+    
+    /**
+     * Requests a page of the bookmarks added since the given time, without parsing the response.
+     * Pinboard filters on the time a bookmark was saved, so edits to older bookmarks and
+     * deletions are not reported.
+     * 
+     * @param fromTime Only bookmarks saved at or after this time, in milliseconds, are returned.
+     * @param start Bookmark number to start from.
+     * @param count Number of results to retrieve.
+     * @param json Whether to ask for the response in json rather than xml.
+     * @param account The account being synced.
+     * @param context The current application context.
+     * @return The response stream, which the caller is responsible for closing.
+     * @throws IOException If a server error was encountered.
+     * @throws AuthenticationException If an authentication error was encountered.
+     * @throws TooManyRequestsException 
+     * @throws PinboardException 
+     */
+    public static InputStream getChangedBookmarksStream(long fromTime, int start, int count, boolean json, Account account, Context context) 
+	throws IOException, AuthenticationException, TooManyRequestsException, PinboardException {
+
+    	TreeMap<String, String> params = new TreeMap<String, String>();
+    	String url = FETCH_BOOKMARKS_URI;
     	
-    	try {
-			bookmarkList = parser.parse();
-		} catch (ParseException e) {
-            Log.e(TAG, "Server error in fetching bookmark list");
-            throw new IOException();
-		}
+    	params.put("fromdt", DateParser.format(fromTime));
+    	
+    	if(start != 0){
+    		params.put("start", Integer.toString(start));
+    	}
+    	
+    	if(count != 0){
+    		params.put("results", Integer.toString(count));
+    	}
+    	
+    	params.put("meta", "yes");
+    	
+    	if(json){
+    		params.put("format", "json");
+    	}
 
-        responseStream.close();
-        
-        return bookmarkList;
+    	return PinboardApiCall(url, params, account, context);
     }
     
     /**
@@ -396,26 +460,48 @@ public class PinboardApi {
      * @throws TooManyRequestsException 
      * @throws PinboardException 
      */
-    public static ArrayList<Tag> getSuggestedTags(String suggestUrl, Account account, Context context) 
+    public static ArrayList<Tag> getSuggestedTags(String suggestUrl, final Account account, final Context context) 
     	throws IOException, AuthenticationException, TooManyRequestsException, PinboardException {
     	
-    	ArrayList<Tag> tagList = new ArrayList<Tag>();
-    	
 		if(!suggestUrl.startsWith("http")){
 			suggestUrl = "http://" + suggestUrl;
 		}
+		
+		final String url = suggestUrl;
+		
+		if(account == null)
+			throw new AuthenticationException();
+		
+		try {
+			return new ArrayList<Tag>(SUGGESTED_TAGS_CACHE.get(account.name + " " + url, new Callable<ArrayList<Tag>>() {
+				public ArrayList<Tag> call() throws Exception {
+					return fetchSuggestedTags(url, account, context);
+				}
+			}));
+		} catch (IOException | AuthenticationException | TooManyRequestsException | PinboardException | RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException(e);
+		}
+    }
+    
+    private static ArrayList<Tag> fetchSuggestedTags(String suggestUrl, Account account, Context context) 
+    	throws IOException, AuthenticationException, TooManyRequestsException, PinboardException {
+    	
+    	ArrayList<Tag> tagList = new ArrayList<Tag>();
 
     	InputStream responseStream = null;
     	TreeMap<String, String> params = new TreeMap<String, String>();
     	params.put("url", suggestUrl);
+    	final boolean json = requestJson(params, context);
     	
     	String url = FETCH_SUGGESTED_TAGS_URI;
     	  	
     	responseStream = PinboardApiCall(url, params, account, context);
-    	SaxTagParser parser = new SaxTagParser(responseStream);
     	
     	try {
-			tagList = parser.parseSuggested();
+			tagList = json ? new JsonTagParser(responseStream).parseSuggested() 
+				: new SaxTagParser(responseStream).parseSuggested();
 		} catch (ParseException e) {
             Log.e(TAG, "Server error in fetching bookmark list");
             throw new IOException();
@@ -443,12 +529,13 @@ public class PinboardApi {
 
     	InputStream responseStream = null;
     	final TreeMap<String, String> params = new TreeMap<String, String>();
+    	final boolean json = requestJson(params, context);
     	  	
     	responseStream = PinboardApiCall(FETCH_TAGS_URI, params, account, context);
-    	final SaxTagParser parser = new SaxTagParser(responseStream);
     	
     	try {
-			tagList = parser.parse();
+			tagList = json ? new JsonTagParser(responseStream).parse() 
+				: new SaxTagParser(responseStream).parse();
 		} catch (ParseException e) {
             Log.e(TAG, "Server error in fetching bookmark list");
             throw new IOException();
@@ -502,12 +589,13 @@ public class PinboardApi {
 
     	InputStream responseStream = null;
     	final TreeMap<String, String> params = new TreeMap<String, String>();
+    	final boolean json = requestJson(params, context);
     	  	
     	responseStream = PinboardApiCall(FETCH_NOTE_LIST_URI, params, account, context);
-    	final SaxNoteListParser parser = new SaxNoteListParser(responseStream);
     	
     	try {
-			noteList = parser.parse();
+			noteList = json ? new JsonNoteListParser(responseStream).parse() 
+				: new SaxNoteListParser(responseStream).parse();
 		} catch (ParseException e) {
             Log.e(TAG, "Server error in fetching bookmark list");
             throw new IOException();
@@ -535,12 +623,13 @@ public class PinboardApi {
 
     	InputStream responseStream = null;
     	final TreeMap<String, String> params = new TreeMap<String, String>();
+    	final boolean json = requestJson(params, context);
     	  	
     	responseStream = PinboardApiCall(FETCH_NOTE_DETAILS_URI + pid, params, account, context);
-    	final SaxNoteParser parser = new SaxNoteParser(responseStream);
     	
     	try {
-			note = parser.parse();
+			note = json ? new JsonNoteParser(responseStream).parse() 
+				: new SaxNoteParser(responseStream).parse();
 		} catch (ParseException e) {
             Log.e(TAG, "Server error in fetching bookmark list");
             throw new IOException();
@@ -550,6 +639,30 @@ public class PinboardApi {
         return note;
     }
     
+    /**
+     * Asks for a json response when the user has chosen json over xml in the settings.
+     * 
+     * @param params The parameters of the api call.
+     * @param context The current application context.
+     * @return Whether the response will be json.
+     */
+    private static boolean requestJson(TreeMap<String, String> params, Context context) {
+    	final boolean json = SettingsHelper.getUseJsonApi(context);
+    	
+    	if(json){
+    		params.put("format", "json");
+    	}
+    	return json;
+    }
+    
+    /**
+     * Only reads may be sent again after a failure, since a write that failed on the way
+     * back may already have been applied.
+     */
+    private static boolean isIdempotent(String url) {
+    	return !ADD_BOOKMARKS_URI.equals(url) && !DELETE_BOOKMARK_URI.equals(url);
+    }
+    
     /**
      * Performs an api call to Pinboard's http based api methods.
      * 
@@ -575,7 +688,7 @@ public class PinboardApi {
     	String authtoken = "00000000000000000000";  // need to provide a sane default value, since a token that is too short causes a 500 error instead of 401
     	
     	try {
-			String tempAuthtoken = am.blockingGetAuthToken(account, Constants.AUTHTOKEN_TYPE, true);
+			String tempAuthtoken = AuthTokenCache.get(account, am);
 			if(tempAuthtoken != null)
 				authtoken = tempAuthtoken;
 		} catch (Exception e) {
@@ -595,32 +708,86 @@ public class PinboardApi {
 		
 		String apiCallUrl = builder.build().toString();
 		
-		Log.d("apiCallUrl", apiCallUrl);
-		final HttpGet post = new HttpGet(apiCallUrl);
-
-		post.setHeader("User-Agent", "PinDroid");
-		post.setHeader("Accept-Encoding", "gzip");
-
-		final DefaultHttpClient client = (DefaultHttpClient)HttpClientFactory.getThreadSafeClient();
-        
-        final HttpResponse resp = client.execute(post);
-        
-        final int statusCode = resp.getStatusLine().getStatusCode();
+		Log.d("apiCallUrl", NetworkStats.redact(apiCallUrl));
+		
+		// note details are fetched by id, which is left out of the endpoint name
+		final String endpoint = url.startsWith(FETCH_NOTE_DETAILS_URI) ? FETCH_NOTE_DETAILS_URI + "{id}" : url;
+
+		final HttpTransport transport = HttpClientFactory.getTransport();
+		final RequestScheduler scheduler = RequestScheduler.get(username);
+		final RetryPolicy retryPolicy = RetryPolicy.get(username);
+		final boolean idempotent = isIdempotent(url);
+		final RetryPolicy.Budget retryBudget = retryPolicy.getBudget();
+		
+		HttpResponse resp = null;
+		int statusCode = 0;
+		long retryDelay = 0;
+		int throttled = 0;
+		int failures = 0;
+		
+		for(int attempt = 0; ; attempt++) {
+			try {
+				scheduler.acquire(url, params);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting to call " + url);
+			}
+			
+			final HttpRequest request = new HttpRequest(apiCallUrl);
+			request.setEndpoint(endpoint);
+			request.setAccount(username);
+			request.setRetry(attempt > 0);
+
+			request.setHeader("User-Agent", "PinDroid");
+			request.setGzip(true);
+			
+			try {
+				resp = transport.execute(request);
+				statusCode = resp.getStatusCode();
+			} catch (IOException e) {
+				final long delay = idempotent && !Thread.currentThread().isInterrupted() 
+					? retryBudget.getDelay(failures++) : -1;
+				
+				if(delay < 0)
+					throw e;
+				
+				Log.d(TAG, "Retrying " + url + " in " + delay + "ms after " + e);
+				retryBudget.sleep(delay);
+				continue;
+			}
+			
+			if(statusCode == Constants.HTTP_STATUS_TOO_MANY_REQUESTS) {
+				resp.close();
+				
+				retryDelay = scheduler.onTooManyRequests(resp.getHeader("Retry-After"));
+				
+				if(++throttled < MAX_ATTEMPTS)
+					continue;
+			} else if(statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR && idempotent) {
+				final long delay = retryBudget.getDelay(failures++);
+				
+				if(delay >= 0) {
+					resp.close();
+					
+					Log.d(TAG, "Retrying " + url + " in " + delay + "ms after status " + statusCode);
+					retryBudget.sleep(delay);
+					continue;
+				}
+			}
+			break;
+		}
 
-    	if (statusCode == HttpStatus.SC_OK) {
-    		
-    		final HttpEntity entity = resp.getEntity();
+    	if (statusCode == HttpURLConnection.HTTP_OK) {
+    		scheduler.onSuccess();
     		
-    		InputStream instream = entity.getContent();
-    		
-    		final Header encoding = entity.getContentEncoding();
-    		
-    		if(encoding != null && encoding.getValue().equalsIgnoreCase("gzip")) {
-    			instream = new GZIPInputStream(instream);
-    		}
-    		
-    		return instream;
-    	} else if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
+    		return resp.getBody();
+    	}
+    	
+    	// release the connection back to the pool
+    	resp.close();
+    	
+    	if (statusCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
+    		AuthTokenCache.invalidate(username, authtoken);
     		am.invalidateAuthToken(Constants.AUTHTOKEN_TYPE, authtoken);
     		
         	try {
@@ -632,8 +799,8 @@ public class PinboardApi {
         	
     		throw new AuthenticationException();
     	} else if (statusCode == Constants.HTTP_STATUS_TOO_MANY_REQUESTS) {
-    		throw new TooManyRequestsException(300);
-    	} else if (statusCode == HttpStatus.SC_REQUEST_URI_TOO_LONG) {
+    		throw new TooManyRequestsException(RequestScheduler.toSeconds(retryDelay));
+    	} else if (statusCode == HttpURLConnection.HTTP_REQ_TOO_LONG) {
     		throw new PinboardException();
     	} else {
     		throw new IOException();
@@ -23,16 +23,15 @@ package com.pindroid.client;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.text.ParseException;
+import java.util.ArrayList;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.auth.AuthenticationException;
-import org.apache.http.client.methods.HttpGet;
-
-import com.pindroid.xml.SaxFeedParser;
+import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.xml.BookmarkStream;
 
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.util.Log;
 
 public class PinboardFeed {
@@ -43,31 +42,44 @@ public class PinboardFeed {
     public static final String FETCH_RECENT_USER_URI = "http://feeds.pinboard.in/rss";
     public static final String FETCH_NETWORK_URI = "http://feeds.pinboard.in/rss/";
     
+    // number of items read before the first partial feed is published
+    private static final int FIRST_PROGRESS = 20;
+    
+    /**
+     * Receives the items of a feed that have been read so far, while the rest is still
+     * downloading.  Called on the thread fetching the feed.
+     */
+    public interface OnFeedProgressListener {
+    	void onFeedProgress(Cursor bookmarks);
+    }
+    
     /**
      * Retrieves a list of recent bookmarks for Pinboard.
      * 
+     * @param listener Receives the bookmarks read so far while the feed downloads, or null.
      * @return The list of bookmarks received from the server.
      * @throws JSONException If an error was encountered in deserializing the JSON object returned from 
      * the server.
      * @throws IOException If a server error was encountered.
      * @throws AuthenticationException If an authentication error was encountered.
      */
-    public static Cursor fetchRecent()
+    public static Cursor fetchRecent(OnFeedProgressListener listener)
     	throws IOException, ParseException {
 
-        final HttpGet post = new HttpGet(FETCH_RECENT_URI);
+        final HttpRequest post = new HttpRequest(FETCH_RECENT_URI);
+        post.setEndpoint("rss/recent");
         
         Cursor bookmarkList = null;
 
-        final HttpResponse resp = HttpClientFactory.getThreadSafeClient().execute(post);
-        InputStream responseStream = resp.getEntity().getContent();
-
-        if (resp.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-        	SaxFeedParser parser = new SaxFeedParser(responseStream);
+        final HttpResponse resp = HttpClientFactory.getTransport().execute(post);
+        InputStream responseStream = resp.getBody();
 
-			bookmarkList = parser.parse();
+        if (resp.getStatusCode() == HttpURLConnection.HTTP_OK) {
+        	bookmarkList = readFeed(responseStream, listener);
+			responseStream.close();
 
         } else {
+        	responseStream.close();
         	Log.e(TAG, "Server error in fetching network recent list");
             throw new IOException();
         }
@@ -78,28 +90,30 @@ public class PinboardFeed {
     /**
      * Retrieves a list of popular bookmarks for Pinboard.
      * 
+     * @param listener Receives the bookmarks read so far while the feed downloads, or null.
      * @return The list of bookmarks received from the server.
      * @throws JSONException If an error was encountered in deserializing the JSON object returned from 
      * the server.
      * @throws IOException If a server error was encountered.
      * @throws AuthenticationException If an authentication error was encountered.
      */
-    public static Cursor fetchPopular()
+    public static Cursor fetchPopular(OnFeedProgressListener listener)
     	throws IOException, ParseException {
 
-        final HttpGet post = new HttpGet(FETCH_POPULAR_URI);
+        final HttpRequest post = new HttpRequest(FETCH_POPULAR_URI);
+        post.setEndpoint("rss/popular");
         
         Cursor bookmarkList = null;
 
-        final HttpResponse resp = HttpClientFactory.getThreadSafeClient().execute(post);
-        InputStream responseStream = resp.getEntity().getContent();
-
-        if (resp.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-        	SaxFeedParser parser = new SaxFeedParser(responseStream);
+        final HttpResponse resp = HttpClientFactory.getTransport().execute(post);
+        InputStream responseStream = resp.getBody();
 
-			bookmarkList = parser.parse();
+        if (resp.getStatusCode() == HttpURLConnection.HTTP_OK) {
+        	bookmarkList = readFeed(responseStream, listener);
+			responseStream.close();
 
         } else {
+        	responseStream.close();
         	Log.e(TAG, "Server error in fetching network popular list");
             throw new IOException();
         }
@@ -110,13 +124,14 @@ public class PinboardFeed {
     /**
      * Retrieves a list of recent bookmarks for a Pinboard user.
      * 
+     * @param listener Receives the bookmarks read so far while the feed downloads, or null.
      * @return The list of bookmarks received from the server.
      * @throws JSONException If an error was encountered in deserializing the JSON object returned from 
      * the server.
      * @throws IOException If a server error was encountered.
      * @throws AuthenticationException If an authentication error was encountered.
      */
-    public static Cursor fetchUserRecent(String username, String tagname)
+    public static Cursor fetchUserRecent(String username, String tagname, OnFeedProgressListener listener)
     	throws IOException, ParseException {
     	
     	String url = FETCH_RECENT_USER_URI;
@@ -130,19 +145,20 @@ public class PinboardFeed {
     		}	
     	}
 
-        final HttpGet post = new HttpGet(url.trim());
+        final HttpRequest post = new HttpRequest(url.trim());
+        post.setEndpoint("rss/user");
         
         Cursor bookmarkList = null;
 
-        final HttpResponse resp = HttpClientFactory.getThreadSafeClient().execute(post);
-        InputStream responseStream = resp.getEntity().getContent();
+        final HttpResponse resp = HttpClientFactory.getTransport().execute(post);
+        InputStream responseStream = resp.getBody();
 
-        if (resp.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-        	SaxFeedParser parser = new SaxFeedParser(responseStream);
-
-			bookmarkList = parser.parse();
+        if (resp.getStatusCode() == HttpURLConnection.HTTP_OK) {
+        	bookmarkList = readFeed(responseStream, listener);
+			responseStream.close();
 
         } else {
+        	responseStream.close();
         	Log.e(TAG, "Server error in fetching network recent list");
             throw new IOException();
         }
@@ -153,11 +169,12 @@ public class PinboardFeed {
     /**
      * Retrieves a list of recent bookmarks for a Pinboard users network.
      * 
+     * @param listener Receives the bookmarks read so far while the feed downloads, or null.
      * @return The list of bookmarks received from the server.
      * @throws IOException If a server error was encountered.
      * @throws AuthenticationException If an authentication error was encountered.
      */
-    public static Cursor fetchNetworkRecent(String username, String secretToken)
+    public static Cursor fetchNetworkRecent(String username, String secretToken, OnFeedProgressListener listener)
     	throws IOException, ParseException {
     	
     	String url = FETCH_RECENT_USER_URI;
@@ -172,25 +189,58 @@ public class PinboardFeed {
     	
     	url += "/network/";
     	
-    	Log.d("network", url);
+    	Log.d("network", NetworkStats.redact(url));
 
-        final HttpGet post = new HttpGet(url);
+        final HttpRequest post = new HttpRequest(url);
+        post.setEndpoint("rss/network");
         
         Cursor bookmarkList = null;
 
-        final HttpResponse resp = HttpClientFactory.getThreadSafeClient().execute(post);
-        InputStream responseStream = resp.getEntity().getContent();
-
-        if (resp.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-        	SaxFeedParser parser = new SaxFeedParser(responseStream);
+        final HttpResponse resp = HttpClientFactory.getTransport().execute(post);
+        InputStream responseStream = resp.getBody();
 
-			bookmarkList = parser.parse();
+        if (resp.getStatusCode() == HttpURLConnection.HTTP_OK) {
+        	bookmarkList = readFeed(responseStream, listener);
+			responseStream.close();
 
         } else {
+        	responseStream.close();
         	Log.e(TAG, "Server error in fetching network recent list");
             throw new IOException();
         }
 
         return bookmarkList;
     }
-}
\ No newline at end of file
+    
+    private static Cursor readFeed(InputStream responseStream, OnFeedProgressListener listener) throws ParseException {
+        final ArrayList<Object[]> rows = new ArrayList<Object[]>();
+        final BookmarkStream stream = BookmarkStream.forFeed(responseStream);
+        int nextProgress = FIRST_PROGRESS;
+        Bookmark b;
+        
+        while((b = stream.next()) != null) {
+            rows.add(new Object[]{0, b.getUrl(), b.getDescription(), b.getMeta(), b.getTagString(), 
+            		b.getToRead() ? 1 : 0, b.getShared() ? 1 : 0, b.getNotes(), b.getTime(), b.getAccount(), null});
+            
+            // batches double in size, so copying the rows for each one stays linear overall
+            if(listener != null && rows.size() == nextProgress) {
+            	listener.onFeedProgress(toCursor(rows));
+            	nextProgress *= 2;
+            }
+        }
+        
+        return toCursor(rows);
+    }
+    
+    private static Cursor toCursor(ArrayList<Object[]> rows) {
+        final MatrixCursor bookmarks = new MatrixCursor(new String[] {Bookmark._ID, Bookmark.Url, 
+        		Bookmark.Description, Bookmark.Meta, Bookmark.Tags, Bookmark.ToRead, Bookmark.Shared,
+        		Bookmark.Notes, Bookmark.Time, Bookmark.Account, Bookmark.Hash}, rows.size());
+        
+        for(Object[] row : rows) {
+        	bookmarks.addRow(row);
+        }
+        
+        return bookmarks;
+    }
+}
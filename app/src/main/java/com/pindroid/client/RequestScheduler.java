@@ -0,0 +1,177 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import android.util.Log;
+
+/**
+ * Applies Pinboard's documented rate limits to outgoing api calls.  General calls are
+ * spaced three seconds apart per user, while posts/all downloads may only be started every
+ * five minutes.  A download is started by the request for its first page; the following
+ * pages of the same download are only spaced like general calls.  When the server still
+ * answers with 429 the scheduler honors the Retry-After header and widens the interval, so
+ * a long sync slows down instead of failing.
+ */
+public class RequestScheduler {
+	
+	private static final String TAG = "RequestScheduler";
+	
+	public static final long GENERAL_INTERVAL = ApiRateLimiter.DEFAULT_INTERVAL;
+	public static final long FULL_DOWNLOAD_INTERVAL = 5 * 60 * 1000; // ms
+	public static final long MAX_INTERVAL = 60 * 1000; // ms
+	public static final long DEFAULT_RETRY_AFTER = 60 * 1000; // ms
+	
+	// calls waiting longer than this are handed back to the sync manager instead
+	public static final long MAX_WAIT = 2 * 60 * 1000; // ms
+	
+	private static final HashMap<String, RequestScheduler> schedulers = new HashMap<String, RequestScheduler>();
+	
+	private final ApiRateLimiter general = new ApiRateLimiter(GENERAL_INTERVAL);
+	private final ApiRateLimiter fullDownload = new ApiRateLimiter(FULL_DOWNLOAD_INTERVAL);
+	
+	/**
+	 * Returns the scheduler for an account.  Pinboard's limits apply per user, so all
+	 * threads making calls for the same account share one scheduler.
+	 */
+	public static RequestScheduler get(String username) {
+		synchronized(schedulers) {
+			RequestScheduler scheduler = schedulers.get(username);
+			
+			if(scheduler == null) {
+				scheduler = new RequestScheduler();
+				schedulers.put(username, scheduler);
+			}
+			
+			return scheduler;
+		}
+	}
+	
+	/**
+	 * Blocks until the given api call may be sent.
+	 * 
+	 * @param url The api method being called.
+	 * @param params The parameters of the call.
+	 * @throws TooManyRequestsException If the call could not be sent within {@link #MAX_WAIT}.
+	 * @throws InterruptedException If the calling thread was interrupted while waiting.
+	 */
+	public void acquire(String url, Map<String, String> params) 
+		throws TooManyRequestsException, InterruptedException {
+		
+		if(isFullDownload(url, params)) {
+			final long wait = fullDownload.getWait();
+			
+			if(wait > MAX_WAIT)
+				throw new TooManyRequestsException(toSeconds(wait));
+		}
+		
+		final long waited = general.acquire(MAX_WAIT);
+		
+		if(waited < 0)
+			throw new TooManyRequestsException(toSeconds(general.getWait()));
+		
+		if(isFullDownload(url, params) && fullDownload.acquire(MAX_WAIT) < 0)
+			throw new TooManyRequestsException(toSeconds(fullDownload.getWait()));
+		
+		if(waited > 0)
+			Log.d(TAG, "Waited " + waited + "ms before calling " + url);
+	}
+	
+	/**
+	 * Gradually returns the interval to normal after a successful call.
+	 */
+	public void onSuccess() {
+		synchronized(general) {
+			final long interval = general.getInterval();
+			
+			if(interval > GENERAL_INTERVAL)
+				general.setInterval(Math.max(GENERAL_INTERVAL, interval - interval / 4));
+		}
+	}
+	
+	/**
+	 * Records a 429 response.  No further call is sent for this account until the delay
+	 * requested by the server has passed, and the interval between calls is doubled.
+	 * 
+	 * @param retryAfter The value of the Retry-After header, or null if there was none.
+	 * @return The delay applied, in milliseconds.
+	 */
+	public long onTooManyRequests(String retryAfter) {
+		final long delay = parseRetryAfter(retryAfter, DEFAULT_RETRY_AFTER);
+		
+		synchronized(general) {
+			general.setInterval(Math.min(MAX_INTERVAL, general.getInterval() * 2));
+		}
+		general.defer(delay);
+		
+		Log.d(TAG, "Too many requests, deferring calls for " + delay + "ms, interval now " + general.getInterval() + "ms");
+		return delay;
+	}
+	
+	/**
+	 * Whether the call starts a posts/all download, paged or not.  The first page is sent
+	 * without a start parameter.
+	 */
+	private static boolean isFullDownload(String url, Map<String, String> params) {
+		if(!PinboardApi.FETCH_BOOKMARKS_URI.equals(url))
+			return false;
+		
+		final String start = params.get("start");
+		return start == null || start.equals("0");
+	}
+	
+	/**
+	 * Parses a Retry-After header, which holds either a number of seconds or an http date.
+	 * 
+	 * @return The delay in milliseconds, or defaultDelay if the header is missing or malformed.
+	 */
+	static long parseRetryAfter(String value, long defaultDelay) {
+		if(value == null || value.trim().length() == 0)
+			return defaultDelay;
+		
+		try {
+			return Math.max(0, Long.parseLong(value.trim()) * 1000);
+		} catch(NumberFormatException e) {
+			try {
+				final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+				format.setTimeZone(TimeZone.getTimeZone("GMT"));
+				
+				final Date date = format.parse(value.trim());
+				return Math.max(0, date.getTime() - System.currentTimeMillis());
+			} catch(ParseException e1) {
+				return defaultDelay;
+			}
+		}
+	}
+	
+	static int toSeconds(long millis) {
+		return (int)((millis + 999) / 1000);
+	}
+}
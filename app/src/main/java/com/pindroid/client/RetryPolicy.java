@@ -0,0 +1,144 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.os.SystemClock;
+
+/**
+ * Decides when a failed read is sent again.  Dropped connections, timeouts and 5xx responses
+ * are usually over within seconds, so idempotent calls are retried with exponential backoff
+ * and full jitter instead of failing the sync.  All retries of a sync draw on one budget of
+ * time spent waiting, which keeps a server that stays down from holding the sync open however
+ * long the sync itself runs; calls made outside a sync get a smaller budget of their own.
+ */
+public class RetryPolicy {
+	
+	public static final long BASE_DELAY = 1000; // ms
+	public static final long MAX_DELAY = 30 * 1000; // ms
+	public static final int MAX_RETRIES = 5;
+	
+	public static final long SYNC_RETRY_BUDGET = 3 * 60 * 1000; // ms
+	public static final long CALL_RETRY_BUDGET = 15 * 1000; // ms
+	
+	private static final HashMap<String, RetryPolicy> policies = new HashMap<String, RetryPolicy>();
+	
+	private final Random random = new Random();
+	private volatile Budget syncBudget = null;
+	
+	/**
+	 * Returns the retry policy for an account, shared by all threads syncing it.
+	 */
+	public static RetryPolicy get(String username) {
+		synchronized(policies) {
+			RetryPolicy policy = policies.get(username);
+			
+			if(policy == null) {
+				policy = new RetryPolicy();
+				policies.put(username, policy);
+			}
+			
+			return policy;
+		}
+	}
+	
+	/**
+	 * Starts a fresh retry budget for a sync of this account.
+	 */
+	public void startSync() {
+		syncBudget = new Budget(SYNC_RETRY_BUDGET);
+	}
+	
+	public void finishSync() {
+		syncBudget = null;
+	}
+	
+	/**
+	 * @return The budget the retries of a call starting now draw on: that of the running
+	 * sync, or a new one for the call alone.
+	 */
+	public Budget getBudget() {
+		final Budget budget = syncBudget;
+		
+		return budget != null ? budget : new Budget(CALL_RETRY_BUDGET);
+	}
+	
+	/**
+	 * The time that may still be spent waiting to retry.  Only delays actually slept are
+	 * counted, so time spent on successful requests never uses it up.
+	 */
+	public class Budget {
+		
+		private final long limit;
+		private final AtomicLong spent = new AtomicLong();
+		
+		Budget(long limit) {
+			this.limit = limit;
+		}
+		
+		/**
+		 * Picks the delay before a retry, uniformly between zero and an exponentially growing
+		 * bound, so that clients that failed together do not come back together.
+		 * 
+		 * @param retry The number of retries already made for this call.
+		 * @return The delay in milliseconds, or -1 if the call should not be retried.
+		 */
+		public long getDelay(int retry) {
+			final long remaining = limit - spent.get();
+			
+			if(retry >= MAX_RETRIES || remaining <= 0)
+				return -1;
+			
+			final long bound = Math.min(MAX_DELAY, BASE_DELAY << retry);
+			final long delay;
+			
+			synchronized(random) {
+				delay = (long)(random.nextDouble() * bound);
+			}
+			
+			return Math.min(delay, remaining);
+		}
+		
+		/**
+		 * Waits out a retry delay, charging the time waited to this budget.
+		 * 
+		 * @throws InterruptedIOException If the thread was interrupted while waiting.
+		 */
+		public void sleep(long delay) throws InterruptedIOException {
+			final long start = SystemClock.elapsedRealtime();
+			
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting to retry");
+			} finally {
+				spent.addAndGet(SystemClock.elapsedRealtime() - start);
+			}
+		}
+	}
+}
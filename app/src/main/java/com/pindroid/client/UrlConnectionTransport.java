@@ -0,0 +1,213 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * An {@link HttpTransport} built on {@link HttpURLConnection}, which keeps connections alive
+ * in the platform's connection pool.  Redirects are followed here rather than by the
+ * connection, which refuses to follow one from http to https.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+	
+	static final int MAX_REDIRECTS = 5;
+	
+	private final SSLSocketFactory mSslSocketFactory;
+	
+	/**
+	 * @param sslSocketFactory The factory for https connections, or null for the platform default.
+	 */
+	public UrlConnectionTransport(SSLSocketFactory sslSocketFactory) {
+		mSslSocketFactory = sslSocketFactory != null ? new CountingSocketFactory(sslSocketFactory) : null;
+	}
+	
+	public HttpResponse execute(HttpRequest request) throws IOException {
+		final URL original = new URL(request.getUrl());
+		URL url = original;
+		
+		for(int redirects = 0; ; redirects++) {
+			final HttpResponse response = execute(request, url, url.getHost().equalsIgnoreCase(original.getHost()));
+			final String location = response.getHeader("Location");
+			
+			if(!isRedirect(response.getStatusCode()) || location == null)
+				return response;
+			
+			response.close();
+			
+			if(redirects == MAX_REDIRECTS)
+				throw new ProtocolException("Too many redirects: " + request.getUrl());
+			
+			url = new URL(url, location);
+			
+			if(!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol()))
+				throw new ProtocolException("Unsupported redirect to " + url.getProtocol());
+		}
+	}
+	
+	private static boolean isRedirect(int statusCode) {
+		switch(statusCode) {
+			case HttpURLConnection.HTTP_MOVED_PERM:
+			case HttpURLConnection.HTTP_MOVED_TEMP:
+			case HttpURLConnection.HTTP_SEE_OTHER:
+			case 307:
+			case 308:
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * Sends the request to one url, without following redirects.  Credentials are only sent
+	 * to the host the request was made for.
+	 */
+	private HttpResponse execute(HttpRequest request, URL url, boolean sameHost) throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+		
+		request.attach(new Closeable() {
+			public void close() {
+				connection.disconnect();
+			}
+		});
+		
+		try {
+			connection.setConnectTimeout(request.getConnectTimeout());
+			connection.setReadTimeout(request.getReadTimeout());
+			connection.setUseCaches(false);
+			connection.setInstanceFollowRedirects(false);
+			
+			if(connection instanceof HttpsURLConnection) {
+				HttpClientFactory.sSecureRequests.incrementAndGet();
+				
+				if(mSslSocketFactory != null)
+					((HttpsURLConnection)connection).setSSLSocketFactory(mSslSocketFactory);
+			}
+			
+			for(Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+				if(sameHost || !"Authorization".equalsIgnoreCase(header.getKey()))
+					connection.setRequestProperty(header.getKey(), header.getValue());
+			}
+			
+			// asking for gzip explicitly turns off transparent decompression, so the compressed
+			// size of the body can be counted
+			if(request.isGzip())
+				connection.setRequestProperty("Accept-Encoding", "gzip");
+			
+			final int statusCode = connection.getResponseCode();
+			
+			InputStream body = statusCode >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream() : connection.getInputStream();
+			
+			if(body == null)
+				body = new ByteArrayInputStream(new byte[0]);
+			
+			final AtomicLong transferred = new AtomicLong();
+			body = new CountingInputStream(body, transferred);
+			
+			if("gzip".equalsIgnoreCase(connection.getContentEncoding()) && connection.getContentLength() != 0)
+				body = new GZIPInputStream(body);
+			
+			return new HttpResponse(statusCode, connection.getHeaderFields(), body, transferred);
+		} catch (IOException e) {
+			connection.disconnect();
+			
+			if(request.isCancelled())
+				throw new InterruptedIOException("Request cancelled: " + request.getUrl());
+			throw e;
+		}
+	}
+	
+	/**
+	 * Counts the tls connections opened, so that the number of requests that reused a pooled
+	 * connection can be worked out.
+	 */
+	private static class CountingSocketFactory extends SSLSocketFactory {
+		
+		private final SSLSocketFactory mFactory;
+		
+		CountingSocketFactory(SSLSocketFactory factory) {
+			mFactory = factory;
+		}
+		
+		@Override
+		public String[] getDefaultCipherSuites() {
+			return mFactory.getDefaultCipherSuites();
+		}
+
+		@Override
+		public String[] getSupportedCipherSuites() {
+			return mFactory.getSupportedCipherSuites();
+		}
+		
+		@Override
+		public Socket createSocket() throws IOException {
+			HttpClientFactory.sConnectionsOpened.incrementAndGet();
+			return mFactory.createSocket();
+		}
+
+		@Override
+		public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+			HttpClientFactory.sConnectionsOpened.incrementAndGet();
+			return mFactory.createSocket(s, host, port, autoClose);
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			HttpClientFactory.sConnectionsOpened.incrementAndGet();
+			return mFactory.createSocket(host, port);
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			HttpClientFactory.sConnectionsOpened.incrementAndGet();
+			return mFactory.createSocket(host, port, localHost, localPort);
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			HttpClientFactory.sConnectionsOpened.incrementAndGet();
+			return mFactory.createSocket(host, port);
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+			HttpClientFactory.sConnectionsOpened.incrementAndGet();
+			return mFactory.createSocket(address, port, localAddress, localPort);
+		}
+	}
+}
@@ -43,6 +43,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.app.ListFragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.AsyncTaskLoader;
@@ -288,6 +290,8 @@ public class BrowseBookmarkFeedFragment extends ListFragment
 		private String feed = "";
 		private Account account = null;
 		
+		private final Handler handler = new Handler(Looper.getMainLooper());
+		
         public LoaderDrone(Context context, String u, String t, String f, Account a) {
         	super(context);
         	
@@ -303,6 +307,18 @@ public class BrowseBookmarkFeedFragment extends ListFragment
         public Cursor loadInBackground() {
             Cursor results = null;
             
+            // show the first items while the rest of the feed is still downloading
+            final PinboardFeed.OnFeedProgressListener listener = new PinboardFeed.OnFeedProgressListener() {
+				public void onFeedProgress(final Cursor bookmarks) {
+					handler.post(new Runnable() {
+						public void run() {
+							if(isStarted() && !isAbandoned())
+								deliverResult(bookmarks);
+						}
+					});
+				}
+            };
+            
  	       if(feed.equals("global"))
  	    	   feed = "";
         
@@ -310,13 +326,13 @@ public class BrowseBookmarkFeedFragment extends ListFragment
  			   if(feed.equals("network")) {
  				   String token = AccountManager.get(getContext()).getUserData(account, Constants.PREFS_SECRET_TOKEN);
 
- 				   results = PinboardFeed.fetchNetworkRecent(user, token);
+ 				   results = PinboardFeed.fetchNetworkRecent(user, token, listener);
  			   } else if(feed.equals("recent")) {
- 				  results = PinboardFeed.fetchRecent();
+ 				  results = PinboardFeed.fetchRecent(listener);
  			   } else if(feed.equals("popular")) {
-  				  results = PinboardFeed.fetchPopular();
+  				  results = PinboardFeed.fetchPopular(listener);
   			   } else {
- 				  results = PinboardFeed.fetchUserRecent(feed, tag);
+ 				  results = PinboardFeed.fetchUserRecent(feed, tag, listener);
  			   }
 
  		   }catch (ParseException e) {
@@ -21,8 +21,10 @@
 
 package com.pindroid.fragment;
 
+import android.app.AlertDialog;
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.res.Resources;
 import android.net.Uri;
@@ -35,6 +37,8 @@ import android.widget.Toast;
 
 import com.pindroid.Constants;
 import com.pindroid.R;
+import com.pindroid.client.NetworkStats;
+import com.pindroid.platform.SyncHistoryManager;
 import com.pindroid.providers.BookmarkContentProvider;
 import com.pindroid.util.SyncUtils;
 
@@ -80,6 +84,60 @@ public class SettingsFragment extends PreferenceFragment {
             }
         });
 
+        Preference historyPref = findPreference("pref_synchistory");
+        historyPref.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            public boolean onPreferenceClick(Preference preference) {
+                String history = SyncHistoryManager.Dump(mContext);
+
+                new AlertDialog.Builder(mContext)
+                    .setTitle(R.string.pref_synchistory_title)
+                    .setMessage(history.length() > 0 ? history : getString(R.string.synchistory_empty))
+                    .setPositiveButton(android.R.string.ok, null)
+                    .show();
+                return true;
+            }
+        });
+
+        Preference networkStatsPref = findPreference("pref_networkstats");
+        networkStatsPref.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            public boolean onPreferenceClick(Preference preference) {
+                String stats = NetworkStats.dump();
+
+                new AlertDialog.Builder(mContext)
+                    .setTitle(R.string.pref_networkstats_title)
+                    .setMessage(stats.length() > 0 ? stats : getString(R.string.networkstats_empty))
+                    .setPositiveButton(android.R.string.ok, null)
+                    .setNegativeButton(R.string.networkstats_reset, new DialogInterface.OnClickListener() {
+                        public void onClick(DialogInterface dialog, int which) {
+                            NetworkStats.reset();
+                        }
+                    })
+                    .show();
+                return true;
+            }
+        });
+
+        Preference exportHistoryPref = findPreference("pref_synchistory_export");
+        exportHistoryPref.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            public boolean onPreferenceClick(Preference preference) {
+                Intent i = new Intent(Intent.ACTION_SEND);
+                i.setType("text/plain");
+                i.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.pref_synchistory_title));
+                i.putExtra(Intent.EXTRA_TEXT, SyncHistoryManager.Dump(mContext) + "\n" + NetworkStats.dump());
+
+                startActivity(Intent.createChooser(i, getString(R.string.pref_synchistory_export_title)));
+                return true;
+            }
+        });
+
+        Preference clearHistoryPref = findPreference("pref_synchistory_clear");
+        clearHistoryPref.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            public boolean onPreferenceClick(Preference preference) {
+                SyncHistoryManager.Clear(mContext);
+                return true;
+            }
+        });
+
         Preference accountPref = findPreference("pref_accountsettings");
         accountPref.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
             public boolean onPreferenceClick(Preference preference) {
@@ -0,0 +1,124 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.util.DateParser;
+import com.pindroid.util.StringPool;
+
+/**
+ * Reads the posts of a posts/all or posts/get response in json format, as a stream, into the
+ * same bookmarks the {@link com.pindroid.xml.SaxBookmarkParser} produces.
+ */
+public class JsonBookmarkParser {
+
+	private InputStream is;
+	
+	public JsonBookmarkParser(InputStream stream) {
+		is = stream;
+	}
+
+	public ArrayList<Bookmark> parse() throws ParseException {
+		final ArrayList<Bookmark> bookmarks = new ArrayList<Bookmark>();
+		// shares the tag strings repeated within this response, and goes with it
+		final StringPool pool = new StringPool();
+		
+		try {
+			final JsonReader reader = new JsonReader(new InputStreamReader(is, "UTF-8"));
+			
+			if(reader.peek() == JsonToken.BEGIN_OBJECT) {
+				// posts/get wraps its posts in an object with the date and user
+				reader.beginObject();
+				while(reader.hasNext()) {
+					if(reader.nextName().equals("posts"))
+						readPosts(reader, bookmarks, pool);
+					else reader.skipValue();
+				}
+				reader.endObject();
+			} else {
+				readPosts(reader, bookmarks, pool);
+			}
+		} catch (Exception e) {
+			throw new ParseException(e.getMessage(), 0);
+		}
+		return bookmarks;
+	}
+	
+	private static void readPosts(JsonReader reader, ArrayList<Bookmark> bookmarks, StringPool pool) throws IOException {
+		reader.beginArray();
+		while(reader.hasNext()) {
+			bookmarks.add(readPost(reader, pool));
+		}
+		reader.endArray();
+	}
+	
+	private static Bookmark readPost(JsonReader reader, StringPool pool) throws IOException {
+		final Bookmark bookmark = new Bookmark();
+		boolean toread = false;
+		boolean shared = true;
+		
+		reader.beginObject();
+		while(reader.hasNext()) {
+			final String name = reader.nextName();
+			
+			if(reader.peek() == JsonToken.NULL) {
+				reader.skipValue();
+			} else if(name.equals("href")) {
+				bookmark.setUrl(reader.nextString());
+			} else if(name.equals("time")) {
+				bookmark.setTime(DateParser.parseTime(reader.nextString()));
+			} else if(name.equals("description")) {
+				bookmark.setDescription(reader.nextString());
+			} else if(name.equals("extended")) {
+				bookmark.setNotes(reader.nextString());
+			} else if(name.equals("tags")) {
+				bookmark.setTagString(pool.intern(reader.nextString()));
+			} else if(name.equals("hash")) {
+				bookmark.setHash(reader.nextString());
+			} else if(name.equals("meta")) {
+				bookmark.setMeta(reader.nextString());
+			} else if(name.equals("toread")) {
+				toread = reader.nextString().equals("yes");
+			} else if(name.equals("shared")) {
+				shared = !reader.nextString().equals("no");
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		
+		bookmark.setToRead(toread);
+		bookmark.setShared(shared);
+		bookmark.setSynced(1);
+		return bookmark;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.pindroid.providers.NoteContent.Note;
+import com.pindroid.util.DateParser;
+
+/**
+ * Reads a notes/list response in json format.
+ */
+public class JsonNoteListParser {
+
+	private InputStream is;
+	
+	public JsonNoteListParser(InputStream stream) {
+		is = stream;
+	}
+
+	public ArrayList<Note> parse() throws ParseException {
+		final ArrayList<Note> notes = new ArrayList<Note>();
+		
+		try {
+			final JsonReader reader = new JsonReader(new InputStreamReader(is, "UTF-8"));
+			
+			if(reader.peek() == JsonToken.BEGIN_OBJECT) {
+				reader.beginObject();
+				while(reader.hasNext()) {
+					if(reader.nextName().equals("notes"))
+						readNotes(reader, notes);
+					else reader.skipValue();
+				}
+				reader.endObject();
+			} else {
+				readNotes(reader, notes);
+			}
+		} catch (Exception e) {
+			throw new ParseException(e.getMessage(), 0);
+		}
+		return notes;
+	}
+	
+	private static void readNotes(JsonReader reader, ArrayList<Note> notes) throws IOException {
+		reader.beginArray();
+		while(reader.hasNext()) {
+			final Note note = new Note();
+			
+			reader.beginObject();
+			while(reader.hasNext()) {
+				final String name = reader.nextName();
+				
+				if(reader.peek() == JsonToken.NULL) {
+					reader.skipValue();
+				} else if(name.equals("id")) {
+					note.setPid(reader.nextString());
+				} else if(name.equals("title")) {
+					note.setTitle(reader.nextString());
+				} else if(name.equals("hash")) {
+					note.setHash(reader.nextString());
+				} else if(name.equals("created_at")) {
+					note.setAdded(DateParser.parseTime(reader.nextString()));
+				} else if(name.equals("updated_at")) {
+					note.setUpdated(DateParser.parseTime(reader.nextString()));
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			
+			notes.add(note);
+		}
+		reader.endArray();
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.json;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.pindroid.providers.NoteContent.Note;
+
+/**
+ * Reads a notes/ID response in json format.
+ */
+public class JsonNoteParser {
+
+	private InputStream is;
+	
+	public JsonNoteParser(InputStream stream) {
+		is = stream;
+	}
+
+	public Note parse() throws ParseException {
+		final Note note = new Note();
+		
+		try {
+			final JsonReader reader = new JsonReader(new InputStreamReader(is, "UTF-8"));
+			
+			reader.beginObject();
+			while(reader.hasNext()) {
+				final String name = reader.nextName();
+				
+				if(reader.peek() == JsonToken.NULL) {
+					reader.skipValue();
+				} else if(name.equals("id")) {
+					note.setPid(reader.nextString());
+				} else if(name.equals("hash")) {
+					note.setHash(reader.nextString());
+				} else if(name.equals("text")) {
+					note.setText(reader.nextString());
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} catch (Exception e) {
+			throw new ParseException(e.getMessage(), 0);
+		}
+		return note;
+	}
+}
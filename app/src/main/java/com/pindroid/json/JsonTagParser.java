@@ -0,0 +1,120 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.pindroid.providers.TagContent.Tag;
+import com.pindroid.util.IntUtils;
+
+/**
+ * Reads tags/get and posts/suggest responses in json format.
+ */
+public class JsonTagParser {
+
+	private InputStream is;
+	
+	public JsonTagParser(InputStream stream) {
+		is = stream;
+	}
+
+	/**
+	 * Reads a tags/get response, an object mapping each tag to its count.
+	 */
+	public ArrayList<Tag> parse() throws ParseException {
+		final ArrayList<Tag> tags = new ArrayList<Tag>();
+		
+		try {
+			final JsonReader reader = new JsonReader(new InputStreamReader(is, "UTF-8"));
+			
+			reader.beginObject();
+			while(reader.hasNext()) {
+				final Tag tag = new Tag();
+				tag.setTagName(reader.nextName());
+				
+				if(reader.peek() == JsonToken.NUMBER)
+					tag.setCount(reader.nextInt());
+				else tag.setCount(IntUtils.parseUInt(reader.nextString()));
+				
+				tags.add(tag);
+			}
+			reader.endObject();
+		} catch (Exception e) {
+			throw new ParseException(e.getMessage(), 0);
+		}
+		return tags;
+	}
+	
+	/**
+	 * Reads a posts/suggest response, a list of objects holding the popular and the
+	 * recommended tags.
+	 */
+	public ArrayList<Tag> parseSuggested() throws ParseException {
+		final ArrayList<Tag> tags = new ArrayList<Tag>();
+		
+		try {
+			final JsonReader reader = new JsonReader(new InputStreamReader(is, "UTF-8"));
+			
+			if(reader.peek() == JsonToken.BEGIN_ARRAY) {
+				reader.beginArray();
+				while(reader.hasNext()) {
+					readSuggestions(reader, tags);
+				}
+				reader.endArray();
+			} else {
+				readSuggestions(reader, tags);
+			}
+		} catch (Exception e) {
+			throw new ParseException(e.getMessage(), 0);
+		}
+		return tags;
+	}
+	
+	private static void readSuggestions(JsonReader reader, ArrayList<Tag> tags) throws IOException {
+		reader.beginObject();
+		while(reader.hasNext()) {
+			final String type = reader.nextName();
+			
+			if(type.equals("popular") || type.equals("recommended")) {
+				reader.beginArray();
+				while(reader.hasNext()) {
+					final Tag tag = new Tag();
+					tag.setTagName(reader.nextString());
+					tag.setType(type);
+					tags.add(tag);
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+}
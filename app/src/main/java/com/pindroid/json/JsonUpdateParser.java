@@ -0,0 +1,70 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.json;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+
+import android.util.JsonReader;
+
+import com.pindroid.client.Update;
+import com.pindroid.util.DateParser;
+
+/**
+ * Reads a posts/update response in json format.
+ */
+public class JsonUpdateParser {
+
+	private InputStream is;
+	
+	public JsonUpdateParser(InputStream stream) {
+		is = stream;
+	}
+
+	public Update parse() throws ParseException {
+		final Update update = new Update();
+		
+		try {
+			final JsonReader reader = new JsonReader(new InputStreamReader(is, "UTF-8"));
+			
+			reader.beginObject();
+			while(reader.hasNext()) {
+				if(reader.nextName().equals("update_time")) {
+					try {
+						update.setLastUpdate(DateParser.parse(reader.nextString()).getTime());
+					} catch (ParseException e) {
+						update.setLastUpdate(0);
+						e.printStackTrace();
+					}
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} catch (Exception e) {
+			throw new ParseException(e.getMessage(), 0);
+		}
+		return update;
+	}
+}
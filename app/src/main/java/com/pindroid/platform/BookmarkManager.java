@@ -22,16 +22,25 @@
 package com.pindroid.platform;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
+import com.pindroid.providers.BookmarkContentProvider;
 import com.pindroid.providers.ContentNotFoundException;
 import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.providers.OutboxContent.Outbox;
 import com.pindroid.util.Md5Hash;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.RemoteException;
 import android.provider.BaseColumns;
 import android.support.v4.content.CursorLoader;
 import android.text.TextUtils;
@@ -42,20 +51,15 @@ public class BookmarkManager {
 		final String[] projection = new String[] {Bookmark._ID, Bookmark.Url, Bookmark.Description, Bookmark.Notes, Bookmark.Hash,
 				Bookmark.Meta, Bookmark.Tags, Bookmark.ToRead, Bookmark.Shared, Bookmark.Synced, Bookmark.Deleted,
 				Bookmark.Account, Bookmark.Time};
-		String selection = null;
-		String[] selectionargs = new String[]{username, "% " + tagname + " %", 
-				"% " + tagname, tagname + " %", tagname};
+		String selection = Bookmark.Deleted + "=0";
+		String[] selectionargs = null;
 		
 		if(tagname != null && tagname != "") {
-			selection = Bookmark.Account + "=? AND " +
-				"(" + Bookmark.Tags + " LIKE ? OR " +
+			selection += " AND (" + Bookmark.Tags + " LIKE ? OR " +
 				Bookmark.Tags + " LIKE ? OR " +
 				Bookmark.Tags + " LIKE ? OR " +
 				Bookmark.Tags + " = ?)";
-
-		} else {
-			selectionargs = new String[]{username};
-			selection = Bookmark.Account + "=?";
+			selectionargs = new String[]{"% " + tagname + " %", "% " + tagname, tagname + " %", tagname};
 		}
 		if(unread) {
 			selection += " AND " + Bookmark.ToRead + "=1";
@@ -63,24 +67,20 @@ public class BookmarkManager {
 		if(untagged) {
 			selection += " AND " + nullOrEmpty(Bookmark.Tags);
 		}
-		selection += " AND " + Bookmark.Deleted + "=0";
 		
-		return new CursorLoader(context, Bookmark.CONTENT_URI, projection, selection, selectionargs, sortorder);
+		return new CursorLoader(context, BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, username), 
+			projection, selection, selectionargs, sortorder);
 	}
 	
 	public static ArrayList<Bookmark> GetLocalBookmarks(String username, Context context){
 		ArrayList<Bookmark> bookmarkList = new ArrayList<Bookmark>();
 		final String[] projection = new String[] {Bookmark._ID, Bookmark.Url, Bookmark.Description, Bookmark.Notes, Bookmark.Hash,
 				Bookmark.Meta, Bookmark.Tags, Bookmark.ToRead, Bookmark.Shared, Bookmark.Synced, Bookmark.Deleted};
-		String selection = null;
-		String[] selectionargs = new String[]{username};
-		
-		selectionargs = new String[]{username};
-		selection = Bookmark.Account + "=? AND " + Bookmark.Synced + "<>1 AND " + Bookmark.Deleted + "=0";
+		final String selection = Bookmark.Synced + "<>1 AND " + Bookmark.Deleted + "=0";
 		
-		Uri bookmarks = Bookmark.CONTENT_URI;
+		Uri bookmarks = BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, username);
 
-		Cursor c = context.getContentResolver().query(bookmarks, projection, selection, selectionargs, null);				
+		Cursor c = context.getContentResolver().query(bookmarks, projection, selection, null, null);				
 
 		if(c.moveToFirst()){
 			int idColumn = c.getColumnIndex(Bookmark._ID);
@@ -113,15 +113,11 @@ public class BookmarkManager {
 		ArrayList<Bookmark> bookmarkList = new ArrayList<Bookmark>();
 		final String[] projection = new String[] {Bookmark._ID, Bookmark.Url, Bookmark.Description, Bookmark.Notes, Bookmark.Hash,
 				Bookmark.Meta, Bookmark.Tags, Bookmark.ToRead, Bookmark.Shared, Bookmark.Synced, Bookmark.Deleted};
-		String selection = null;
-		String[] selectionargs = new String[]{username};
+		final String selection = Bookmark.Synced + "=0 AND " + Bookmark.Deleted + "=1";
 		
-		selectionargs = new String[]{username};
-		selection = Bookmark.Account + "=? AND " + Bookmark.Synced + "=0 AND " + Bookmark.Deleted + "=1";
-		
-		Uri bookmarks = Bookmark.CONTENT_URI;
+		Uri bookmarks = BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, username);
 
-		Cursor c = context.getContentResolver().query(bookmarks, projection, selection, selectionargs, null);				
+		Cursor c = context.getContentResolver().query(bookmarks, projection, selection, null, null);				
 
 		if(c.moveToFirst()){
 			int idColumn = c.getColumnIndex(Bookmark._ID);
@@ -193,10 +189,11 @@ public class BookmarkManager {
 	// TODO normalize url (remove trailing slash)
 	public static Bookmark GetByUrl(String url, String username, Context context) throws ContentNotFoundException {		
 		final String[] projection = new String[] {Bookmark._ID, Bookmark.Account, Bookmark.Url, Bookmark.Description, Bookmark.Notes, Bookmark.Time, Bookmark.Tags, Bookmark.Hash, Bookmark.Meta, Bookmark.ToRead, Bookmark.Shared, Bookmark.Synced, Bookmark.Deleted};
-		String selection = Bookmark.Url + "=? AND " + Bookmark.Account + "=? AND " + Bookmark.Deleted + "=0";
-		final String[] selectionargs = new String[]{ url, username };
+		String selection = Bookmark.Url + "=? AND " + Bookmark.Deleted + "=0";
+		final String[] selectionargs = new String[]{ url };
 		
-		Cursor c = context.getContentResolver().query(Bookmark.CONTENT_URI, projection, selection, selectionargs, null);				
+		Cursor c = context.getContentResolver().query(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, username), 
+			projection, selection, selectionargs, null);				
 		
 		if(c.moveToFirst()){
 			final int idColumn = c.getColumnIndex(Bookmark._ID);
@@ -233,10 +230,11 @@ public class BookmarkManager {
 	
 	public static Bookmark GetByHash(String hash, String username, Context context) throws ContentNotFoundException {		
 		final String[] projection = new String[] {Bookmark._ID, Bookmark.Account, Bookmark.Url, Bookmark.Description, Bookmark.Notes, Bookmark.Time, Bookmark.Tags, Bookmark.Hash, Bookmark.Meta, Bookmark.ToRead, Bookmark.Shared, Bookmark.Synced, Bookmark.Deleted};
-		String selection = Bookmark.Hash + "=? AND " + Bookmark.Account + "=? AND " + Bookmark.Deleted + "=0";
-		final String[] selectionargs = new String[]{ hash, username };
+		String selection = Bookmark.Hash + "=? AND " + Bookmark.Deleted + "=0";
+		final String[] selectionargs = new String[]{ hash };
 		
-		Cursor c = context.getContentResolver().query(Bookmark.CONTENT_URI, projection, selection, selectionargs, null);				
+		Cursor c = context.getContentResolver().query(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, username), 
+			projection, selection, selectionargs, null);				
 		
 		if(c.moveToFirst()){
 			final int idColumn = c.getColumnIndex(Bookmark._ID);
@@ -293,7 +291,8 @@ public class BookmarkManager {
 		values.put(Bookmark.Synced, 0);
 		values.put(Bookmark.Deleted, 0);
 		
-		context.getContentResolver().insert(Bookmark.CONTENT_URI, values);
+		context.getContentResolver().insert(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, account), values);
+		OutboxManager.Enqueue(hash, url, Outbox.OPERATION_UPSERT, account, context);
 	}
 	
 	public static void BulkInsert(ArrayList<Bookmark> list, String account, Context context) {
@@ -301,26 +300,129 @@ public class BookmarkManager {
 		ContentValues[] bcv = new ContentValues[bookmarksize];
 		
 		for(int i = 0; i < bookmarksize; i++){
-			Bookmark b = list.get(i);
-			
-			ContentValues values = new ContentValues();
-			values.put(Bookmark.Description, b.getDescription());
-			values.put(Bookmark.Url, b.getUrl());
-			values.put(Bookmark.Notes, b.getNotes());
-			values.put(Bookmark.Tags, b.getTagString());
-			values.put(Bookmark.Hash, b.getHash());
-			values.put(Bookmark.Meta, b.getMeta());
-			values.put(Bookmark.Time, b.getTime());
-			values.put(Bookmark.Account, account);
-			values.put(Bookmark.ToRead, b.getToRead() ? 1 : 0);
-			values.put(Bookmark.Shared, b.getShared() ? 1 : 0);
-			values.put(Bookmark.Synced, 1);
-			values.put(Bookmark.Deleted, false);
+			bcv[i] = ToSyncedContentValues(list.get(i), account);
+		}
+		
+		context.getContentResolver().bulkInsert(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, account), bcv);
+	}
+	
+	/**
+	 * Writes a page of bookmarks received from the server in one transaction.  New bookmarks
+	 * go through the provider's compiled insert statement rather than one ContentValues per
+	 * bookmark, the operations are applied alongside them, and the given hashes are recorded
+	 * as seen during the sync pass.
+	 * 
+	 * @param operations Operations on the bookmarks of the same account, such as updates.
+	 * @param seen The hashes of every bookmark received, or null if the pass is not swept.
+	 */
+	public static void Ingest(ArrayList<Bookmark> list, ArrayList<ContentProviderOperation> operations, 
+			ArrayList<String> seen, String account, long pass, Context context) {
+		if(list.isEmpty() && operations.isEmpty() && (seen == null || seen.isEmpty()))
+			return;
+		
+		final Bundle extras = new Bundle();
+		extras.putParcelableArrayList(BookmarkContentProvider.EXTRA_BOOKMARKS, list);
+		extras.putParcelableArrayList(BookmarkContentProvider.EXTRA_OPERATIONS, operations);
+		extras.putStringArrayList(BookmarkContentProvider.EXTRA_SEEN, seen);
+		extras.putLong(BookmarkContentProvider.EXTRA_PASS, pass);
+		
+		context.getContentResolver().call(Bookmark.CONTENT_URI, BookmarkContentProvider.METHOD_INGEST_BOOKMARKS, account, extras);
+	}
+	
+	public static ContentValues ToSyncedContentValues(Bookmark b, String account) {
+		ContentValues values = new ContentValues();
+		values.put(Bookmark.Description, b.getDescription());
+		values.put(Bookmark.Url, b.getUrl());
+		values.put(Bookmark.Notes, b.getNotes());
+		values.put(Bookmark.Tags, b.getTagString());
+		values.put(Bookmark.Hash, b.getHash());
+		values.put(Bookmark.Meta, b.getMeta());
+		values.put(Bookmark.Time, b.getTime());
+		values.put(Bookmark.Account, account);
+		values.put(Bookmark.ToRead, b.getToRead() ? 1 : 0);
+		values.put(Bookmark.Shared, b.getShared() ? 1 : 0);
+		values.put(Bookmark.Synced, 1);
+		values.put(Bookmark.Deleted, false);
+		
+		return values;
+	}
+	
+	/**
+	 * Gets the sync state of the local bookmarks of an account with the given hashes, keyed by hash.
+	 * Only the id, hash, meta, synced and deleted fields of the returned bookmarks are populated.
+	 */
+	public static HashMap<String, Bookmark> GetSyncStates(String username, List<String> hashes, Context context){
+		final HashMap<String, Bookmark> states = new HashMap<String, Bookmark>();
+		
+		if(hashes.isEmpty())
+			return states;
+		
+		final String[] projection = new String[] {Bookmark._ID, Bookmark.Hash, Bookmark.Meta, Bookmark.Synced, Bookmark.Deleted};
+		final String selection = Bookmark.Hash + " IN (" + placeholders(hashes.size()) + ")";
+		
+		Cursor c = context.getContentResolver().query(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, username), 
+			projection, selection, hashes.toArray(new String[hashes.size()]), null);
+		
+		if(c.moveToFirst()){
+			final int idColumn = c.getColumnIndex(Bookmark._ID);
+			final int hashColumn = c.getColumnIndex(Bookmark.Hash);
+			final int metaColumn = c.getColumnIndex(Bookmark.Meta);
+			final int syncedColumn = c.getColumnIndex(Bookmark.Synced);
+			final int deletedColumn = c.getColumnIndex(Bookmark.Deleted);
 			
-			bcv[i] = values;
+			do {
+				Bookmark b = new Bookmark(c.getInt(idColumn));
+				b.setHash(c.getString(hashColumn));
+				b.setMeta(c.getString(metaColumn));
+				b.setSynced(c.getInt(syncedColumn));
+				b.setDeleted(c.getInt(deletedColumn) != 0);
+				
+				states.put(b.getHash(), b);
+			} while(c.moveToNext());
 		}
+		c.close();
+		return states;
+	}
+	
+	/**
+	 * Deletes the synced bookmarks of an account whose hashes were not recorded as seen during
+	 * the given sync pass, meaning they were not received from the server during that pass.
+	 * 
+	 * @return The number of bookmarks deleted.
+	 */
+	public static int DeleteUnseen(String username, long pass, Context context){
+		final Bundle extras = new Bundle();
+		extras.putLong(BookmarkContentProvider.EXTRA_PASS, pass);
+		
+		final Bundle result = context.getContentResolver().call(Bookmark.CONTENT_URI, 
+			BookmarkContentProvider.METHOD_DELETE_UNSEEN, username, extras);
+		
+		return result.getInt(BookmarkContentProvider.EXTRA_COUNT);
+	}
+	
+	/**
+	 * Builds a comma separated list of sql parameter placeholders.
+	 */
+	public static String placeholders(int count) {
+		final StringBuilder sb = new StringBuilder(count * 2);
+		for(int i = 0; i < count; i++) {
+			if(i > 0)
+				sb.append(',');
+			sb.append('?');
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Applies a list of provider operations in a single transaction.
+	 */
+	public static ContentProviderResult[] ApplyBatch(ArrayList<ContentProviderOperation> operations, Context context) 
+		throws RemoteException, OperationApplicationException {
+		
+		if(operations.isEmpty())
+			return new ContentProviderResult[0];
 		
-		context.getContentResolver().bulkInsert(Bookmark.CONTENT_URI, bcv);
+		return context.getContentResolver().applyBatch(BookmarkContentProvider.AUTHORITY, operations);
 	}
 	
 	public static void UpdateBookmark(Bookmark bookmark, String account, Context context){
@@ -331,8 +433,8 @@ public class BookmarkManager {
 			hash = Md5Hash.md5(url);
 		} else hash = bookmark.getHash();
 		
-		final String selection = Bookmark.Hash + "=? AND " + Bookmark.Account + "=?";
-		final String[] selectionargs = new String[]{hash, account};
+		final String selection = Bookmark.Hash + "=?";
+		final String[] selectionargs = new String[]{hash};
 		
 		final ContentValues values = new ContentValues();
 		values.put(Bookmark.Description, bookmark.getDescription());
@@ -350,7 +452,18 @@ public class BookmarkManager {
 		values.put(Bookmark.Deleted, false);
 		
 		Uri uri = Bookmark.CONTENT_URI.buildUpon().appendPath(Integer.toString(bookmark.getId())).build();	
-		context.getContentResolver().update(uri, values, selection, selectionargs);
+		context.getContentResolver().update(BookmarkContentProvider.accountUri(uri, account), values, selection, selectionargs);
+		OutboxManager.Enqueue(hash, url, Outbox.OPERATION_UPSERT, account, context);
+	}
+	
+	/**
+	 * Builds an operation setting the synced state of the bookmarks of an account with the given ids.
+	 */
+	public static ContentProviderOperation SetSyncedOperation(List<String> ids, int synced, String account){
+		return ContentProviderOperation.newUpdate(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, account))
+			.withSelection(Bookmark._ID + " IN (" + placeholders(ids.size()) + ")", ids.toArray(new String[ids.size()]))
+			.withValue(Bookmark.Synced, synced)
+			.build();
 	}
 	
 	public static void SetSynced(Bookmark bookmark, int synced, String account, Context context){
@@ -361,14 +474,14 @@ public class BookmarkManager {
 			hash = Md5Hash.md5(url);
 		} else hash = bookmark.getHash();
 		
-		final String selection = Bookmark.Hash + "=? AND " + Bookmark.Account + "=?";
-		final String[] selectionargs = new String[]{hash, account};
+		final String selection = Bookmark.Hash + "=?";
+		final String[] selectionargs = new String[]{hash};
 		
 		final ContentValues values = new ContentValues();
 		values.put(Bookmark.Synced, synced);
 		
 		Uri uri = Bookmark.CONTENT_URI.buildUpon().appendPath(Integer.toString(bookmark.getId())).build();	
-		context.getContentResolver().update(uri, values, selection, selectionargs);
+		context.getContentResolver().update(BookmarkContentProvider.accountUri(uri, account), values, selection, selectionargs);
 	}
 	
 	public static void LazyDelete(Bookmark bookmark, String account, Context context){
@@ -379,53 +492,63 @@ public class BookmarkManager {
 			hash = Md5Hash.md5(url);
 		} else hash = bookmark.getHash();
 		
-		final String selection = Bookmark.Hash + "=? AND " + Bookmark.Account + "=?";
-		final String[] selectionargs = new String[]{hash, account};
+		final String selection = Bookmark.Hash + "=?";
+		final String[] selectionargs = new String[]{hash};
 		
 		final ContentValues values = new ContentValues();
 		values.put(Bookmark.Deleted, true);
 		values.put(Bookmark.Synced, false);
 		
-		context.getContentResolver().update(Bookmark.CONTENT_URI, values, selection, selectionargs);
+		context.getContentResolver().update(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, account), 
+			values, selection, selectionargs);
+		OutboxManager.Enqueue(hash, url, Outbox.OPERATION_DELETE, account, context);
 	}
 
 	public static void DeleteBookmark(Bookmark bookmark, Context context){
 		final int id = bookmark.getId();
 		String selection = "";
 		
+		String[] selectionargs;
+		
 		if(id > 0) {
-			selection = BaseColumns._ID + "=" + id;
+			selection = BaseColumns._ID + "=?";
+			selectionargs = new String[]{Integer.toString(id)};
 		} else {
-			selection = Bookmark.Url + "='" + bookmark.getUrl() + "'";
+			selection = Bookmark.Url + "=?";
+			selectionargs = new String[]{bookmark.getUrl()};
 		}
 		
-		context.getContentResolver().delete(Bookmark.CONTENT_URI, selection, null);
+		final Uri uri = bookmark.getAccount() != null 
+			? BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, bookmark.getAccount()) : Bookmark.CONTENT_URI;
+		context.getContentResolver().delete(uri, selection, selectionargs);
+	}
+	
+	/**
+	 * Builds a single operation that removes the bookmarks with the given ids from the
+	 * account's database.
+	 */
+	public static ContentProviderOperation DeleteOperation(List<String> ids, String account){
+		return ContentProviderOperation.newDelete(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, account))
+			.withSelection(BaseColumns._ID + " IN (" + placeholders(ids.size()) + ")", ids.toArray(new String[ids.size()]))
+			.build();
 	}
 	
+	/**
+	 * Drops the databases of the given accounts, or of every other account if inverse is set.
+	 * Their tags, notes and changes not yet uploaded go with them.
+	 */
 	public static void TruncateBookmarks(ArrayList<String> accounts, Context context, boolean inverse){
+		final Bundle extras = new Bundle();
+		extras.putStringArrayList(BookmarkContentProvider.EXTRA_ACCOUNTS, accounts);
+		extras.putBoolean(BookmarkContentProvider.EXTRA_INVERSE, inverse);
 		
-		final ArrayList<String> selectionList = new ArrayList<String>();
-		
-		final String operator = inverse ? "<>" : "=";
-		final String logicalOp = inverse ? " AND " : " OR ";
-		
-		for(String s : accounts) {
-			selectionList.add(Bookmark.Account + " " + operator + " '" + s + "'");
-		}
-		
-		String selection = TextUtils.join(logicalOp, selectionList);
-		
-		if(accounts.size() > 0)
-			selection += " AND " + Bookmark.Synced + "=1";
-		else selection += Bookmark.Synced + "=1";
-		
-		context.getContentResolver().delete(Bookmark.CONTENT_URI, selection, null);
+		context.getContentResolver().call(Bookmark.CONTENT_URI, BookmarkContentProvider.METHOD_DROP_ACCOUNTS, null, extras);
 	}
 	
 	public static CursorLoader SearchBookmarks(String query, String tagname, boolean unread, String username, Context context) {
 		final String[] projection = new String[] {Bookmark._ID, Bookmark.Url, Bookmark.Description, Bookmark.Hash,
 				Bookmark.Meta, Bookmark.Tags, Bookmark.Shared, Bookmark.ToRead, Bookmark.Synced, Bookmark.Deleted};
-		String selection = null;
+		String selection = Bookmark.Deleted + "=0";
 		
 		final String sortorder = Bookmark.Description + " ASC";
 		
@@ -445,10 +568,8 @@ public class BookmarkManager {
 				selectionlist.add("%" + s + "%");
 				selectionlist.add("%" + s + "%");
 			}
-			selectionlist.add(username);
 			
-			selection = TextUtils.join(" AND ", queryList) + " AND " +
-				Bookmark.Account + "=?";
+			selection += " AND " + TextUtils.join(" AND ", queryList);
 		} else if(query != null && query != ""){
 			for(String s : queryBookmarks) {
 				queryList.add("(" + Bookmark.Description + " LIKE ? OR " +
@@ -458,30 +579,24 @@ public class BookmarkManager {
 				selectionlist.add("%" + s + "%");
 			}
 
-			selection = TextUtils.join(" AND ", queryList) +
-				" AND " + Bookmark.Account + "=? AND " +
-				"(" + Bookmark.Tags + " LIKE ? OR " +
+			selection += " AND " + TextUtils.join(" AND ", queryList) +
+				" AND (" + Bookmark.Tags + " LIKE ? OR " +
 				Bookmark.Tags + " LIKE ? OR " +
 				Bookmark.Tags + " LIKE ? OR " +
 				Bookmark.Tags + " = ?)";
 			
-			selectionlist.add(username);
 			selectionlist.add("% " + tagname + " %");
 			selectionlist.add("% " + tagname);
 			selectionlist.add(tagname + " %");
 			selectionlist.add(tagname);
-		} else {
-			selectionlist.add(username);
-			selection = Bookmark.Account + "=?";
 		}
 		
 		if(unread) {
 			selection += " AND " + Bookmark.ToRead + "=1";
 		}
 		
-		selection += " AND " + Bookmark.Deleted + "=0";
-		
-		return new CursorLoader(context, Bookmark.CONTENT_URI, projection, selection, selectionlist.toArray(new String[]{}), sortorder);
+		return new CursorLoader(context, BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, username), 
+			projection, selection, selectionlist.toArray(new String[]{}), sortorder);
 	}
 
 	public static int GetAllBookmarksCount(String username, Context context){
@@ -489,10 +604,9 @@ public class BookmarkManager {
 			return 0;
 
 		final String[] projection = new String[] {Bookmark._ID};
-		final String selection = Bookmark.Account + "=?";
-		final String[] selectionargs = new String[]{username};
 
-		final Cursor c = context.getContentResolver().query(Bookmark.CONTENT_URI, projection, selection, selectionargs, null);
+		final Cursor c = context.getContentResolver().query(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, username), 
+			projection, null, null, null);
 
 		final int count = c.getCount();
 
@@ -505,10 +619,10 @@ public class BookmarkManager {
 			return 0;
 		
 		final String[] projection = new String[] {Bookmark._ID};
-		final String selection = Bookmark.Account + "=? AND " + Bookmark.ToRead + "=1";
-		final String[] selectionargs = new String[]{username};
+		final String selection = Bookmark.ToRead + "=1";
 		
-		final Cursor c = context.getContentResolver().query(Bookmark.CONTENT_URI, projection, selection, selectionargs, null);				
+		final Cursor c = context.getContentResolver().query(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, username), 
+			projection, selection, null, null);				
 		
 		final int count = c.getCount();
 		
@@ -525,10 +639,10 @@ public class BookmarkManager {
 			return 0;
 
 		final String[] projection = new String[] {Bookmark._ID};
-		final String selection = Bookmark.Account + "=? AND " + nullOrEmpty(Bookmark.Tags);
-		final String[] selectionargs = new String[]{username};
+		final String selection = nullOrEmpty(Bookmark.Tags);
 
-		final Cursor c = context.getContentResolver().query(Bookmark.CONTENT_URI, projection, selection, selectionargs, null);
+		final Cursor c = context.getContentResolver().query(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, username), 
+			projection, selection, null, null);
 
 		final int count = c.getCount();
 
@@ -22,15 +22,21 @@
 package com.pindroid.platform;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
+import com.pindroid.providers.BookmarkContentProvider;
 import com.pindroid.providers.ContentNotFoundException;
 import com.pindroid.providers.NoteContent.Note;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.RemoteException;
 import android.provider.BaseColumns;
 import android.support.v4.content.CursorLoader;
 import android.text.TextUtils;
@@ -39,10 +45,9 @@ public class NoteManager {
 	
 	public static CursorLoader GetNotes(String account, String sortorder, Context context) {		
 		final String[] projection = new String[] {Note._ID, Note.Title, Note.Text, Note.Hash, Note.Pid, Note.Account, Note.Added, Note.Updated};
-		final String selection = Note.Account + "=?";
-		final String[] selectionargs = new String[]{account};
 		
-		return new CursorLoader(context, Note.CONTENT_URI, projection, selection, selectionargs, sortorder);
+		return new CursorLoader(context, BookmarkContentProvider.accountUri(Note.CONTENT_URI, account), 
+			projection, null, null, sortorder);
 	}
 	
 	public static Note GetById(int id, Context context) throws ContentNotFoundException {		
@@ -79,51 +84,85 @@ public class NoteManager {
 		ContentValues[] ncv = new ContentValues[notesize];
 		
 		for(int i = 0; i < notesize; i++){	
-			Note n = list.get(i);
-			
-			ContentValues values = new ContentValues();
-			
-			values.put(Note.Title, n.getTitle());
-			values.put(Note.Text, n.getText());
-			values.put(Note.Account, account);
-			values.put(Note.Hash, n.getHash());
-			values.put(Note.Pid, n.getPid());
-			values.put(Note.Added, n.getAdded());
-			values.put(Note.Updated, n.getUpdated());
-			
-			ncv[i] = values;
+			ncv[i] = ToContentValues(list.get(i), account);
 		}
 		
-		context.getContentResolver().bulkInsert(Note.CONTENT_URI, ncv);
+		context.getContentResolver().bulkInsert(BookmarkContentProvider.accountUri(Note.CONTENT_URI, account), ncv);
 	}
 	
-	public static void TruncateNotes(String account, Context context){
-		
-		final String selection = Note.Account + "=?";
-		final String[] selectionargs = new String[]{account};
-		
-		context.getContentResolver().delete(Note.CONTENT_URI, selection, selectionargs);
+	public static ContentValues ToContentValues(Note n, String account) {
+		ContentValues values = new ContentValues();
+		
+		values.put(Note.Title, n.getTitle());
+		values.put(Note.Text, n.getText());
+		values.put(Note.Account, account);
+		values.put(Note.Hash, n.getHash());
+		values.put(Note.Pid, n.getPid());
+		values.put(Note.Added, n.getAdded());
+		values.put(Note.Updated, n.getUpdated());
+		
+		return values;
 	}
 	
-	public static void TruncateOldNotes(ArrayList<String> accounts, Context context){
+	/**
+	 * Gets the id and hash of every local note for an account, keyed by pid.
+	 */
+	public static HashMap<String, Note> GetSyncStates(String account, Context context) {
+		final HashMap<String, Note> states = new HashMap<String, Note>();
+		final String[] projection = new String[] {Note._ID, Note.Pid, Note.Hash};
 		
-		final ArrayList<String> selectionList = new ArrayList<String>();
+		final Cursor c = context.getContentResolver().query(BookmarkContentProvider.accountUri(Note.CONTENT_URI, account), 
+			projection, null, null, null);
 		
-		for(String s : accounts) {
-			selectionList.add(Note.Account + " <> '" + s + "'");
+		if(c.moveToFirst()){
+			final int idColumn = c.getColumnIndex(Note._ID);
+			final int pidColumn = c.getColumnIndex(Note.Pid);
+			final int hashColumn = c.getColumnIndex(Note.Hash);
+			
+			do {
+				final Note n = new Note();
+				n.setId(c.getInt(idColumn));
+				n.setPid(c.getString(pidColumn));
+				n.setHash(c.getString(hashColumn));
+				
+				states.put(n.getPid(), n);
+			} while(c.moveToNext());
 		}
+		c.close();
+		return states;
+	}
+	
+	/**
+	 * Applies a list of provider operations in a single transaction.
+	 */
+	public static ContentProviderResult[] ApplyBatch(ArrayList<ContentProviderOperation> operations, Context context) 
+		throws RemoteException, OperationApplicationException {
 		
-		final String selection = TextUtils.join(" AND ", selectionList);
+		if(operations.isEmpty())
+			return new ContentProviderResult[0];
 		
-		context.getContentResolver().delete(Note.CONTENT_URI, selection, null);
+		return context.getContentResolver().applyBatch(BookmarkContentProvider.AUTHORITY, operations);
+	}
+	
+	public static void TruncateNotes(String account, Context context){
+		
+		context.getContentResolver().delete(BookmarkContentProvider.accountUri(Note.CONTENT_URI, account), null, null);
+	}
+	
+	/**
+	 * Drops the databases of every account not in the list, see {@link BookmarkManager#TruncateBookmarks}.
+	 */
+	public static void TruncateOldNotes(ArrayList<String> accounts, Context context){
+		BookmarkManager.TruncateBookmarks(accounts, context, true);
 	}
 	
 	public static void UpsertNote(Note note, String account, Context context){
 		final String[] projection = new String[] {Note.Pid, Note.Account, Note.Hash};
-		final String selection = Note.Pid + "=? AND " + Note.Account + "=?";
-		final String[] selectionargs = new String[]{note.getPid(), account};
+		final String selection = Note.Pid + "=?";
+		final String[] selectionargs = new String[]{note.getPid()};
 		
-		final Cursor c = context.getContentResolver().query(Note.CONTENT_URI, projection, selection, selectionargs, null);
+		final Cursor c = context.getContentResolver().query(BookmarkContentProvider.accountUri(Note.CONTENT_URI, account), 
+			projection, selection, selectionargs, null);
 		
 		if(c.moveToFirst()){
 			final int hashColumn = c.getColumnIndex(Note.Hash);
@@ -150,13 +189,13 @@ public class NoteManager {
 		values.put(Note.Updated, note.getUpdated());
 		values.put(Note.Account, note.getAccount());
 	
-		context.getContentResolver().insert(Note.CONTENT_URI, values);
+		context.getContentResolver().insert(BookmarkContentProvider.accountUri(Note.CONTENT_URI, account), values);
 	}
 	
 	public static void UpdateNote(Note note, String account, Context context){
 		
-		final String selection = Note.Pid + "=? AND " + Note.Account + "=?";
-		final String[] selectionargs = new String[]{note.getPid(), account};
+		final String selection = Note.Pid + "=?";
+		final String[] selectionargs = new String[]{note.getPid()};
 		
 		final ContentValues values = new ContentValues();
 		values.put(Note.Title, note.getTitle());
@@ -167,7 +206,8 @@ public class NoteManager {
 		values.put(Note.Updated, note.getUpdated());
 		values.put(Note.Account, note.getAccount());
 		
-		context.getContentResolver().update(Note.CONTENT_URI, values, selection, selectionargs);
+		context.getContentResolver().update(BookmarkContentProvider.accountUri(Note.CONTENT_URI, account), 
+			values, selection, selectionargs);
 	}
 	
 	public static Note CursorToNote(Cursor c) {
@@ -198,15 +238,14 @@ public class NoteManager {
 			selectionlist.add("%" + s + "%");
 		}
 		
-		selectionlist.add(username);
+		String[] selectionargs = null;
 		
 		if(query != null && query != "") {
-			selection = "(" + TextUtils.join(" OR ", queryList) + ")" + 
-				" AND " + Note.Account + "=?";
-		} else {
-			selection = Note.Account + "=?";
+			selection = TextUtils.join(" OR ", queryList);
+			selectionargs = selectionlist.toArray(new String[]{});
 		}
 		
-		return new CursorLoader(context, Note.CONTENT_URI, projection, selection, selectionlist.toArray(new String[]{}), sortorder);
+		return new CursorLoader(context, BookmarkContentProvider.accountUri(Note.CONTENT_URI, username), 
+			projection, selection, selectionargs, sortorder);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.platform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pindroid.providers.OutboxContent.Outbox;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+public class OutboxManager {
+	
+	/**
+	 * Queues a local change to a bookmark for upload, replacing any change already
+	 * queued for the same bookmark.
+	 */
+	public static void Enqueue(String hash, String url, int operation, String account, Context context){
+		final ContentValues values = new ContentValues();
+		values.put(Outbox.Account, account);
+		values.put(Outbox.Hash, hash);
+		values.put(Outbox.Url, url);
+		values.put(Outbox.Operation, operation);
+		values.put(Outbox.Created, System.currentTimeMillis());
+		
+		context.getContentResolver().insert(Outbox.CONTENT_URI, values);
+	}
+	
+	public static ArrayList<Outbox> GetPending(String account, int operation, Context context){
+		final ArrayList<Outbox> result = new ArrayList<Outbox>();
+		final String[] projection = new String[] {Outbox._ID, Outbox.Account, Outbox.Hash, Outbox.Url, Outbox.Operation, Outbox.Created};
+		final String selection = Outbox.Account + "=? AND " + Outbox.Operation + "=?";
+		final String[] selectionargs = new String[]{account, Integer.toString(operation)};
+		final String sortorder = Outbox.Created + " ASC";
+		
+		final Cursor c = context.getContentResolver().query(Outbox.CONTENT_URI, projection, selection, selectionargs, sortorder);
+		
+		if(c.moveToFirst()){
+			final int idColumn = c.getColumnIndex(Outbox._ID);
+			final int accountColumn = c.getColumnIndex(Outbox.Account);
+			final int hashColumn = c.getColumnIndex(Outbox.Hash);
+			final int urlColumn = c.getColumnIndex(Outbox.Url);
+			final int operationColumn = c.getColumnIndex(Outbox.Operation);
+			final int createdColumn = c.getColumnIndex(Outbox.Created);
+			
+			do {
+				result.add(new Outbox(c.getInt(idColumn), c.getString(accountColumn), c.getString(hashColumn), 
+					c.getString(urlColumn), c.getInt(operationColumn), c.getLong(createdColumn)));
+			} while(c.moveToNext());
+		}
+		c.close();
+		return result;
+	}
+	
+	/**
+	 * Counts the changes of an account waiting to be uploaded.
+	 */
+	public static int CountPending(String account, Context context){
+		final String[] projection = new String[] {Outbox._ID};
+		final String selection = Outbox.Account + "=?";
+		final String[] selectionargs = new String[]{account};
+		
+		final Cursor c = context.getContentResolver().query(Outbox.CONTENT_URI, projection, selection, selectionargs, null);
+		final int count = c.getCount();
+		c.close();
+		return count;
+	}
+	
+	/**
+	 * Builds an operation removing the given outbox entries, once their changes have been sent.
+	 */
+	public static ContentProviderOperation DeleteOperation(List<String> ids){
+		return ContentProviderOperation.newDelete(Outbox.CONTENT_URI)
+			.withSelection(Outbox._ID + " IN (" + BookmarkManager.placeholders(ids.size()) + ")", 
+				ids.toArray(new String[ids.size()]))
+			.build();
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.platform;
+
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+
+import com.pindroid.providers.SyncHistoryContent.SyncHistory;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+public class SyncHistoryManager {
+	
+	public static void Add(SyncHistory entry, Context context){
+		final ContentValues values = new ContentValues();
+		values.put(SyncHistory.Account, entry.getAccount());
+		values.put(SyncHistory.Started, entry.getStarted());
+		values.put(SyncHistory.Duration, entry.getDuration());
+		values.put(SyncHistory.Result, entry.getResult());
+		values.put(SyncHistory.Phases, entry.getPhases());
+		values.put(SyncHistory.Requests, entry.getRequests());
+		values.put(SyncHistory.Retries, entry.getRetries());
+		values.put(SyncHistory.CompressedBytes, entry.getCompressedBytes());
+		values.put(SyncHistory.Bytes, entry.getBytes());
+		values.put(SyncHistory.Inserts, entry.getInserts());
+		values.put(SyncHistory.Updates, entry.getUpdates());
+		values.put(SyncHistory.Deletes, entry.getDeletes());
+		
+		context.getContentResolver().insert(SyncHistory.CONTENT_URI, values);
+	}
+	
+	/**
+	 * Returns the recorded sync runs, most recent first.
+	 */
+	public static ArrayList<SyncHistory> GetHistory(Context context){
+		final ArrayList<SyncHistory> result = new ArrayList<SyncHistory>();
+		final String[] projection = new String[] {SyncHistory.Account, SyncHistory.Started, SyncHistory.Duration, 
+			SyncHistory.Result, SyncHistory.Phases, SyncHistory.Requests, SyncHistory.Retries, 
+			SyncHistory.CompressedBytes, SyncHistory.Bytes, SyncHistory.Inserts, SyncHistory.Updates, 
+			SyncHistory.Deletes};
+		final String sortorder = SyncHistory._ID + " DESC";
+		
+		final Cursor c = context.getContentResolver().query(SyncHistory.CONTENT_URI, projection, null, null, sortorder);
+		
+		if(c.moveToFirst()){
+			do {
+				result.add(new SyncHistory(c.getString(0), c.getLong(1), c.getLong(2), c.getString(3), 
+					c.getString(4), c.getLong(5), c.getLong(6), c.getLong(7), c.getLong(8), c.getLong(9), 
+					c.getLong(10), c.getLong(11)));
+			} while(c.moveToNext());
+		}
+		c.close();
+		return result;
+	}
+	
+	/**
+	 * Formats the recorded sync runs as plain text, one run per line, for display or export.
+	 */
+	public static String Dump(Context context){
+		final DateFormat format = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM);
+		final StringBuilder sb = new StringBuilder();
+		
+		for(SyncHistory h : GetHistory(context)) {
+			sb.append(format.format(new Date(h.getStarted())));
+			sb.append(' ');
+			sb.append(h.toString());
+			sb.append('\n');
+		}
+		
+		return sb.toString();
+	}
+	
+	public static void Clear(Context context){
+		context.getContentResolver().delete(SyncHistory.CONTENT_URI, null, null);
+	}
+}
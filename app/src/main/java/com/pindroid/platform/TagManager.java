@@ -23,6 +23,7 @@ package com.pindroid.platform;
 
 import java.util.ArrayList;
 
+import com.pindroid.providers.BookmarkContentProvider;
 import com.pindroid.providers.TagContent.Tag;
 
 import android.content.ContentValues;
@@ -35,25 +36,23 @@ public class TagManager {
 	
 	public static CursorLoader GetTags(String account, String sortorder, Context context) {		
 		final String[] projection = new String[] {Tag._ID, Tag.Name, Tag.Count};
-		final String selection = Tag.Account + "=?";
-		final String[] selectionargs = new String[]{account};
 		
-		return new CursorLoader(context, Tag.CONTENT_URI, projection, selection, selectionargs, sortorder);
+		return new CursorLoader(context, BookmarkContentProvider.accountUri(Tag.CONTENT_URI, account), 
+			projection, null, null, sortorder);
 	}
 	
 	public static Cursor GetTagsAsCursor(String query, String account, String sortorder, Context context) {	
 		final String[] projection = new String[] { Tag._ID, Tag.Name, Tag.Count };
 		String selection = null;
-		String[] selectionargs = new String[]{account, query + "%"};
+		String[] selectionargs = null;
 		
 		if(query != null) {
-			selection = Tag.Account + "=?" + 
-				" AND " + Tag.Name + " LIKE ?";
-		} else {
-			selection = Tag.Account + "=?";
+			selection = Tag.Name + " LIKE ?";
+			selectionargs = new String[]{query + "%"};
 		}
 		
-		return context.getContentResolver().query(Tag.CONTENT_URI, projection, selection, selectionargs, sortorder);
+		return context.getContentResolver().query(BookmarkContentProvider.accountUri(Tag.CONTENT_URI, account), 
+			projection, selection, selectionargs, sortorder);
 	}
 	
 	public static void AddTag(Tag tag, String account, Context context){
@@ -63,7 +62,7 @@ public class TagManager {
 		values.put(Tag.Count, tag.getCount());
 		values.put(Tag.Account, account);
 	
-		context.getContentResolver().insert(Tag.CONTENT_URI, values);
+		context.getContentResolver().insert(BookmarkContentProvider.accountUri(Tag.CONTENT_URI, account), values);
 	}
 	
 	public static void BulkInsert(ArrayList<Tag> list, String account, Context context) {
@@ -82,15 +81,16 @@ public class TagManager {
 			tcv[i] = values;
 		}
 		
-		context.getContentResolver().bulkInsert(Tag.CONTENT_URI, tcv);
+		context.getContentResolver().bulkInsert(BookmarkContentProvider.accountUri(Tag.CONTENT_URI, account), tcv);
 	}
 	
 	public static void UpsertTag(Tag tag, String account, Context context){
 		final String[] projection = new String[] {Tag.Name, Tag.Count};
-		final String selection = Tag.Name + "=? AND " +	Tag.Account + "=?";
-		final String[] selectionargs = new String[]{tag.getTagName(), account};
+		final String selection = Tag.Name + "=?";
+		final String[] selectionargs = new String[]{tag.getTagName()};
 		
-		final Cursor c = context.getContentResolver().query(Tag.CONTENT_URI, projection, selection, selectionargs, null);
+		final Cursor c = context.getContentResolver().query(BookmarkContentProvider.accountUri(Tag.CONTENT_URI, account), 
+			projection, selection, selectionargs, null);
 		
 		if(c.moveToFirst()){
 			final int countColumn = c.getColumnIndex(Tag.Count);
@@ -107,21 +107,23 @@ public class TagManager {
 	
 	public static void UpdateTag(Tag tag, String account, Context context){
 		
-		final String selection = Tag.Name + "=? AND " +	Tag.Account + "=?";
-		final String[] selectionargs = new String[]{tag.getTagName(), account};
+		final String selection = Tag.Name + "=?";
+		final String[] selectionargs = new String[]{tag.getTagName()};
 		
 		final ContentValues values = new ContentValues();
 		values.put(Tag.Count, tag.getCount());
 		
-		context.getContentResolver().update(Tag.CONTENT_URI, values, selection, selectionargs);
+		context.getContentResolver().update(BookmarkContentProvider.accountUri(Tag.CONTENT_URI, account), 
+			values, selection, selectionargs);
 	}
 	
 	public static void UpleteTag(Tag tag, String account, Context context){
 		final String[] projection = new String[] {Tag.Name, Tag.Count};
-		final String selection = Tag.Name + "=? AND " +	Tag.Account + "=?";
-		final String[] selectionargs = new String[]{tag.getTagName(), account};
+		final String selection = Tag.Name + "=?";
+		final String[] selectionargs = new String[]{tag.getTagName()};
 
-		final Cursor c = context.getContentResolver().query(Tag.CONTENT_URI, projection, selection, selectionargs, null);
+		final Cursor c = context.getContentResolver().query(BookmarkContentProvider.accountUri(Tag.CONTENT_URI, account), 
+			projection, selection, selectionargs, null);
 		
 		if(c.moveToFirst()){
 			final int countColumn = c.getColumnIndex(Tag.Count);
@@ -138,31 +140,23 @@ public class TagManager {
 	}
 
 	public static void DeleteTag(Tag tag, String account, Context context){
-		final String selection = Tag.Name + "=? AND " +	Tag.Account + "=?";
-		final String[] selectionargs = new String[]{tag.getTagName(), account};
+		final String selection = Tag.Name + "=?";
+		final String[] selectionargs = new String[]{tag.getTagName()};
 		
-		context.getContentResolver().delete(Tag.CONTENT_URI, selection, selectionargs);
+		context.getContentResolver().delete(BookmarkContentProvider.accountUri(Tag.CONTENT_URI, account), 
+			selection, selectionargs);
 	}
 	
 	public static void TruncateTags(String account, Context context){
 		
-		final String selection = Tag.Account + "=?";
-		final String[] selectionargs = new String[]{account};
-		
-		context.getContentResolver().delete(Tag.CONTENT_URI, selection, selectionargs);
+		context.getContentResolver().delete(BookmarkContentProvider.accountUri(Tag.CONTENT_URI, account), null, null);
 	}
 	
+	/**
+	 * Drops the databases of every account not in the list, see {@link BookmarkManager#TruncateBookmarks}.
+	 */
 	public static void TruncateOldTags(ArrayList<String> accounts, Context context){
-		
-		final ArrayList<String> selectionList = new ArrayList<String>();
-		
-		for(String s : accounts) {
-			selectionList.add(Tag.Account + " <> '" + s + "'");
-		}
-		
-		final String selection = TextUtils.join(" AND ", selectionList);
-		
-		context.getContentResolver().delete(Tag.CONTENT_URI, selection, null);
+		BookmarkManager.TruncateBookmarks(accounts, context, true);
 	}
 	
 	public static CursorLoader SearchTags(String query, String username, Context context) {
@@ -179,15 +173,14 @@ public class TagManager {
 			selectionlist.add("%" + s + "%");
 		}
 		
-		selectionlist.add(username);
+		String[] selectionargs = null;
 		
 		if(query != null && query != "") {
-			selection = "(" + TextUtils.join(" OR ", queryList) + ")" + 
-				" AND " + Tag.Account + "=?";
-		} else {
-			selection = Tag.Account + "=?";
+			selection = TextUtils.join(" OR ", queryList);
+			selectionargs = selectionlist.toArray(new String[]{});
 		}
 		
-		return new CursorLoader(context, Tag.CONTENT_URI, projection, selection, selectionlist.toArray(new String[]{}), sortorder);
+		return new CursorLoader(context, BookmarkContentProvider.accountUri(Tag.CONTENT_URI, username), 
+			projection, selection, selectionargs, sortorder);
 	}
 }
\ No newline at end of file
@@ -22,27 +22,40 @@
 package com.pindroid.providers;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import android.accounts.Account;
 import android.accounts.AccountManager;
 import android.app.SearchManager;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.SharedPreferences;
 import android.content.UriMatcher;
 import android.content.res.Resources;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.MatrixCursor;
+import android.database.MergeCursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.provider.BaseColumns;
 import android.text.TextUtils;
@@ -53,6 +66,8 @@ import com.pindroid.R;
 import com.pindroid.application.PindroidApplication;
 import com.pindroid.providers.BookmarkContent.Bookmark;
 import com.pindroid.providers.NoteContent.Note;
+import com.pindroid.providers.OutboxContent.Outbox;
+import com.pindroid.providers.SyncHistoryContent.SyncHistory;
 import com.pindroid.providers.TagContent.Tag;
 import com.pindroid.util.SyncUtils;
 
@@ -63,10 +78,19 @@ public class BookmarkContentProvider extends ContentProvider {
 	private SQLiteDatabase db;
 	private DatabaseHelper dbHelper;
 	private static final String DATABASE_NAME = "PinboardBookmarks.db";
-	private static final int DATABASE_VERSION = 27;
-	private static final String BOOKMARK_TABLE_NAME = "bookmark";
+	private static final int DATABASE_VERSION = 30;
+	static final String BOOKMARK_TABLE_NAME = "bookmark";
 	private static final String TAG_TABLE_NAME = "tag";
 	private static final String NOTE_TABLE_NAME = "note";
+	private static final String OUTBOX_TABLE_NAME = "outbox";
+	private static final String SYNC_HISTORY_TABLE_NAME = "sync_history";
+	private static final String ACCOUNT_DATABASE_TABLE_NAME = "account_database";
+	private static final String SEEN_TABLE_NAME = "seen";
+	
+	private static final String[] ACCOUNT_TABLE_NAMES = new String[] {BOOKMARK_TABLE_NAME, TAG_TABLE_NAME, NOTE_TABLE_NAME};
+	
+	// each account database hands out row ids from its own range, so that ids stay unique
+	private static final long ACCOUNT_ID_RANGE = 1 << 24;
 	
 	private static final int Bookmarks = 1;
 	private static final int SearchSuggest = 2;
@@ -79,14 +103,68 @@ public class BookmarkContentProvider extends ContentProvider {
 	private static final int UnreadCount = 9;
 	private static final int NoteId = 10;
 	private static final int BookmarkId = 11;
+	private static final int Outboxes = 12;
+	private static final int SyncHistories = 13;
 	
 	
 	private static final String SuggestionLimit = "10";
 	
 	private static final UriMatcher sURIMatcher = buildUriMatcher();
 	
+	private final ThreadLocal<HashSet<Uri>> mBatchNotifications = new ThreadLocal<HashSet<Uri>>();
+	private final HashMap<String, AccountDatabaseHelper> mAccountDatabases = new HashMap<String, AccountDatabaseHelper>();
+	
 	public static final String AUTHORITY = "com.pindroid.providers.BookmarkContentProvider";
 	
+	/**
+	 * Query parameter naming the account a bookmark, tag or note uri refers to.  Requests
+	 * without it are applied to the databases of all accounts.
+	 */
+	public static final String ACCOUNT_PARAMETER = "account";
+	
+	/**
+	 * Provider method removing the databases of accounts that no longer exist.
+	 */
+	public static final String METHOD_DROP_REMOVED_ACCOUNTS = "dropRemovedAccounts";
+	
+	/**
+	 * Provider method deleting the databases, and pending changes, of the accounts listed in
+	 * {@link #EXTRA_ACCOUNTS}, or of every other account if {@link #EXTRA_INVERSE} is set.
+	 */
+	public static final String METHOD_DROP_ACCOUNTS = "dropAccounts";
+	
+	/**
+	 * Provider method writing a page of bookmarks of the account given as argument in one
+	 * transaction.  New bookmarks, passed as a parcelable list in {@link #EXTRA_BOOKMARKS},
+	 * are inserted through a compiled statement, and the operations in {@link #EXTRA_OPERATIONS},
+	 * which may only touch the database of that account, are applied alongside them.  The
+	 * hashes in {@link #EXTRA_SEEN}, if any, are recorded as seen during the sync pass in
+	 * {@link #EXTRA_PASS}.
+	 */
+	public static final String METHOD_INGEST_BOOKMARKS = "ingestBookmarks";
+	
+	/**
+	 * Provider method deleting the synced bookmarks of the account given as argument whose
+	 * hash was not seen during the sync pass in {@link #EXTRA_PASS}, then forgetting the
+	 * seen hashes.  The number of deleted bookmarks is returned in {@link #EXTRA_COUNT}.
+	 */
+	public static final String METHOD_DELETE_UNSEEN = "deleteUnseen";
+	
+	public static final String EXTRA_BOOKMARKS = "bookmarks";
+	public static final String EXTRA_OPERATIONS = "operations";
+	public static final String EXTRA_SEEN = "seen";
+	public static final String EXTRA_PASS = "pass";
+	public static final String EXTRA_COUNT = "count";
+	public static final String EXTRA_ACCOUNTS = "accounts";
+	public static final String EXTRA_INVERSE = "inverse";
+	
+	/**
+	 * Returns a uri restricted to the database of one account.
+	 */
+	public static Uri accountUri(Uri uri, String account) {
+		return uri.buildUpon().appendQueryParameter(ACCOUNT_PARAMETER, account).build();
+	}
+	
 	public static class DatabaseHelper extends SQLiteOpenHelper {
 		
 		DatabaseHelper(Context context) {
@@ -96,6 +174,20 @@ public class BookmarkContentProvider extends ContentProvider {
 
 		@Override
 		public void onCreate(SQLiteDatabase sqlDb) {
+			
+			createAccountTables(sqlDb);
+			createOutbox(sqlDb);
+			createSyncHistory(sqlDb);
+			createAccountDatabases(sqlDb);
+		}
+		
+		/**
+		 * Creates the bookmark, tag and note tables.  Each account database holds the rows of
+		 * one account only, so they are not indexed on ACCOUNT; the column is still filled in
+		 * because rows from several accounts are merged for global search and the unread count,
+		 * and callers read the account back from the row.
+		 */
+		public static void createAccountTables(SQLiteDatabase sqlDb) {
 
 			sqlDb.execSQL("Create table " + BOOKMARK_TABLE_NAME + 
 					" (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -112,10 +204,6 @@ public class BookmarkContentProvider extends ContentProvider {
 					"DELETED INTEGER, " +
 					"SYNCED INTEGER);");
 			
-			sqlDb.execSQL("CREATE INDEX " + BOOKMARK_TABLE_NAME + 
-					"_ACCOUNT ON " + BOOKMARK_TABLE_NAME + " " +
-					"(ACCOUNT)");
-			
 			sqlDb.execSQL("CREATE INDEX " + BOOKMARK_TABLE_NAME + 
 					"_TAGS ON " + BOOKMARK_TABLE_NAME + " " +
 					"(TAGS)");
@@ -130,10 +218,6 @@ public class BookmarkContentProvider extends ContentProvider {
 					"NAME TEXT COLLATE NOCASE, " +
 					"COUNT INTEGER);");
 			
-			sqlDb.execSQL("CREATE INDEX " + TAG_TABLE_NAME + 
-					"_ACCOUNT ON " + TAG_TABLE_NAME + " " +
-					"(ACCOUNT)");
-			
 			sqlDb.execSQL("Create table " + NOTE_TABLE_NAME + 
 					" (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
 					"ACCOUNT TEXT, " +
@@ -143,26 +227,480 @@ public class BookmarkContentProvider extends ContentProvider {
 					"UPDATED INTEGER, " +
 					"HASH TEXT, " +
 					"PID TEXT);");
+		}
+		
+		private void createAccountDatabases(SQLiteDatabase sqlDb) {
+			sqlDb.execSQL("Create table " + ACCOUNT_DATABASE_TABLE_NAME + 
+					" (ACCOUNT TEXT PRIMARY KEY, " +
+					"NUMBER INTEGER);");
+		}
+		
+		private void createSyncHistory(SQLiteDatabase sqlDb) {
+			sqlDb.execSQL("Create table " + SYNC_HISTORY_TABLE_NAME + 
+					" (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+					"ACCOUNT TEXT, " +
+					"STARTED INTEGER, " +
+					"DURATION INTEGER, " +
+					"RESULT TEXT, " +
+					"PHASES TEXT, " +
+					"REQUESTS INTEGER, " +
+					"RETRIES INTEGER, " +
+					"COMPRESSED_BYTES INTEGER, " +
+					"BYTES INTEGER, " +
+					"INSERTS INTEGER, " +
+					"UPDATES INTEGER, " +
+					"DELETES INTEGER);");
+		}
+		
+		private void createOutbox(SQLiteDatabase sqlDb) {
+			sqlDb.execSQL("Create table " + OUTBOX_TABLE_NAME + 
+					" (_id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+					"ACCOUNT TEXT, " +
+					"HASH TEXT, " +
+					"URL TEXT, " +
+					"OPERATION INTEGER, " +
+					"CREATED INTEGER);");
 			
-			sqlDb.execSQL("CREATE INDEX " + NOTE_TABLE_NAME + 
-					"_ACCOUNT ON " + NOTE_TABLE_NAME + " " +
-					"(ACCOUNT)");
-			
+			sqlDb.execSQL("CREATE UNIQUE INDEX " + OUTBOX_TABLE_NAME + 
+					"_ACCOUNT_HASH ON " + OUTBOX_TABLE_NAME + " " +
+					"(ACCOUNT, HASH)");
 		}
 
 		@Override
 		public void onUpgrade(SQLiteDatabase sqlDb, int oldVersion, int newVersion) {
-			sqlDb.execSQL("DROP INDEX IF EXISTS " + BOOKMARK_TABLE_NAME + "_ACCOUNT");
-			sqlDb.execSQL("DROP INDEX IF EXISTS " + BOOKMARK_TABLE_NAME + "_TAGS");
-			sqlDb.execSQL("DROP INDEX IF EXISTS " + BOOKMARK_TABLE_NAME + "_HASH");
-			sqlDb.execSQL("DROP INDEX IF EXISTS " + TAG_TABLE_NAME + "_ACCOUNT");
-			sqlDb.execSQL("DROP INDEX IF EXISTS " + NOTE_TABLE_NAME + "_ACCOUNT");
-			sqlDb.execSQL("DROP TABLE IF EXISTS " + BOOKMARK_TABLE_NAME);
-			sqlDb.execSQL("DROP TABLE IF EXISTS " + TAG_TABLE_NAME);
-			sqlDb.execSQL("DROP TABLE IF EXISTS " + NOTE_TABLE_NAME);	
-			onCreate(sqlDb);
+			if(oldVersion < 27) {
+				sqlDb.execSQL("DROP INDEX IF EXISTS " + BOOKMARK_TABLE_NAME + "_ACCOUNT");
+				sqlDb.execSQL("DROP INDEX IF EXISTS " + BOOKMARK_TABLE_NAME + "_TAGS");
+				sqlDb.execSQL("DROP INDEX IF EXISTS " + BOOKMARK_TABLE_NAME + "_HASH");
+				sqlDb.execSQL("DROP INDEX IF EXISTS " + TAG_TABLE_NAME + "_ACCOUNT");
+				sqlDb.execSQL("DROP INDEX IF EXISTS " + NOTE_TABLE_NAME + "_ACCOUNT");
+				sqlDb.execSQL("DROP TABLE IF EXISTS " + BOOKMARK_TABLE_NAME);
+				sqlDb.execSQL("DROP TABLE IF EXISTS " + TAG_TABLE_NAME);
+				sqlDb.execSQL("DROP TABLE IF EXISTS " + NOTE_TABLE_NAME);	
+				sqlDb.execSQL("DROP TABLE IF EXISTS " + OUTBOX_TABLE_NAME);
+				sqlDb.execSQL("DROP TABLE IF EXISTS " + SYNC_HISTORY_TABLE_NAME);
+				sqlDb.execSQL("DROP TABLE IF EXISTS " + ACCOUNT_DATABASE_TABLE_NAME);
+				onCreate(sqlDb);
+				
+				SyncUtils.clearSyncMarkers(app);
+				return;
+			}
+			
+			if(oldVersion < 28) {
+				createOutbox(sqlDb);
+				
+				// queue up local changes made before the outbox existed
+				sqlDb.execSQL("INSERT OR REPLACE INTO " + OUTBOX_TABLE_NAME + 
+						" (ACCOUNT, HASH, URL, OPERATION, CREATED) " +
+						"SELECT ACCOUNT, HASH, URL, " +
+						"CASE WHEN DELETED=1 THEN " + Outbox.OPERATION_DELETE + " ELSE " + Outbox.OPERATION_UPSERT + " END, " +
+						System.currentTimeMillis() + " FROM " + BOOKMARK_TABLE_NAME + 
+						" WHERE HASH IS NOT NULL AND (SYNCED=0 OR (SYNCED=-1 AND DELETED=0))");
+			}
 			
-			SyncUtils.clearSyncMarkers(app);
+			if(oldVersion < 29) {
+				createSyncHistory(sqlDb);
+			}
+			
+			if(oldVersion < 30) {
+				createAccountDatabases(sqlDb);
+				moveLegacyRows(sqlDb);
+			}
+		}
+		
+		/**
+		 * Moves the rows of each account into a database of its own, once, while upgrading from
+		 * before accounts had databases.  Accounts since removed from the device are moved too,
+		 * and dropped with the others by {@link BookmarkContentProvider#METHOD_DROP_REMOVED_ACCOUNTS}.
+		 */
+		private void moveLegacyRows(SQLiteDatabase global) {
+			final Cursor accounts = global.rawQuery("SELECT ACCOUNT FROM " + BOOKMARK_TABLE_NAME + 
+					" UNION SELECT ACCOUNT FROM " + TAG_TABLE_NAME + 
+					" UNION SELECT ACCOUNT FROM " + NOTE_TABLE_NAME, null);
+			final ContentValues values = new ContentValues();
+			int number = 0;
+			int moved = 0;
+			
+			while(accounts.moveToNext()) {
+				if(accounts.isNull(0))
+					continue;
+				
+				final String[] args = new String[]{accounts.getString(0)};
+				
+				values.clear();
+				values.put("ACCOUNT", args[0]);
+				values.put("NUMBER", ++number);
+				global.insert(ACCOUNT_DATABASE_TABLE_NAME, null, values);
+				
+				final AccountDatabaseHelper helper = new AccountDatabaseHelper(app, number);
+				final SQLiteDatabase accountDb = helper.getWritableDatabase();
+				
+				accountDb.beginTransaction();
+				try {
+					for(String table : ACCOUNT_TABLE_NAMES) {
+						final Cursor c = global.query(table, null, "ACCOUNT=?", args, null, null, null);
+						
+						while(c.moveToNext()) {
+							values.clear();
+							DatabaseUtils.cursorRowToContentValues(c, values);
+							accountDb.insertWithOnConflict(table, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+							moved++;
+						}
+						c.close();
+					}
+					
+					accountDb.setTransactionSuccessful();
+				} finally {
+					accountDb.endTransaction();
+					helper.close();
+				}
+			}
+			accounts.close();
+			
+			for(String table : ACCOUNT_TABLE_NAMES) {
+				global.delete(table, null, null);
+			}
+			Log.d("BookmarkContentProvider", "Moved " + moved + " rows to " + number + " account databases");
+		}
+	}
+	
+	/**
+	 * Holds the bookmarks, tags and notes of a single account, so that syncs of different
+	 * accounts do not share a writer lock and removing an account drops a file.
+	 */
+	static class AccountDatabaseHelper extends SQLiteOpenHelper {
+		
+		private static final int VERSION = 1;
+		
+		private final int mNumber;
+		
+		AccountDatabaseHelper(Context context, int number) {
+			super(context, getAccountDatabaseName(number), null, VERSION);
+			mNumber = number;
+		}
+		
+		@Override
+		public void onCreate(SQLiteDatabase sqlDb) {
+			DatabaseHelper.createAccountTables(sqlDb);
+			createSeen(sqlDb);
+			
+			for(String table : ACCOUNT_TABLE_NAMES) {
+				sqlDb.execSQL("INSERT INTO sqlite_sequence (name, seq) VALUES (?, ?)", 
+						new Object[]{table, mNumber * ACCOUNT_ID_RANGE});
+			}
+		}
+		
+		/**
+		 * The hashes received from the server during a full download, which are swept against
+		 * once every page has been written.  Recording them here, rather than stamping every
+		 * bookmark row, keeps unchanged bookmarks from being rewritten on each full download.
+		 */
+		private static void createSeen(SQLiteDatabase sqlDb) {
+			sqlDb.execSQL("Create table " + SEEN_TABLE_NAME + 
+					" (HASH TEXT PRIMARY KEY, " +
+					"PASS INTEGER);");
+		}
+		
+		@Override
+		public void onUpgrade(SQLiteDatabase sqlDb, int oldVersion, int newVersion) {
+		}
+	}
+	
+	static String getAccountDatabaseName(int number) {
+		return "PinboardBookmarks-" + number + ".db";
+	}
+	
+	/**
+	 * Returns the database of an account, creating it if needed.
+	 */
+	private synchronized AccountDatabaseHelper getAccountDatabase(String account) {
+		AccountDatabaseHelper helper = mAccountDatabases.get(account);
+		
+		if(helper != null)
+			return helper;
+		
+		final SQLiteDatabase global = dbHelper.getWritableDatabase();
+		int number = 0;
+		
+		Cursor c = global.query(ACCOUNT_DATABASE_TABLE_NAME, new String[]{"NUMBER"}, "ACCOUNT=?", 
+				new String[]{account}, null, null, null);
+		if(c.moveToFirst())
+			number = c.getInt(0);
+		c.close();
+		
+		if(number == 0) {
+			c = global.rawQuery("SELECT IFNULL(MAX(NUMBER), 0) + 1 FROM " + ACCOUNT_DATABASE_TABLE_NAME, null);
+			c.moveToFirst();
+			number = c.getInt(0);
+			c.close();
+			
+			final ContentValues values = new ContentValues();
+			values.put("ACCOUNT", account);
+			values.put("NUMBER", number);
+			global.insert(ACCOUNT_DATABASE_TABLE_NAME, null, values);
+		}
+		
+		helper = new AccountDatabaseHelper(getContext(), number);
+		
+		mAccountDatabases.put(account, helper);
+		return helper;
+	}
+	
+	/**
+	 * Returns the account whose database hands out the ids of a bookmark or note uri, or null
+	 * if the uri is not for a single row or the id is from before accounts had databases.
+	 */
+	private String getAccountForId(Uri uri) {
+		final int match = sURIMatcher.match(uri);
+		if(match != BookmarkId && match != NoteId)
+			return null;
+		
+		final long number = Long.parseLong(uri.getLastPathSegment()) / ACCOUNT_ID_RANGE;
+		if(number == 0)
+			return null;
+		
+		String account = null;
+		final Cursor c = dbHelper.getReadableDatabase().query(ACCOUNT_DATABASE_TABLE_NAME, new String[]{"ACCOUNT"}, 
+				"NUMBER=?", new String[]{Long.toString(number)}, null, null, null);
+		if(c.moveToFirst())
+			account = c.getString(0);
+		c.close();
+		
+		return account;
+	}
+	
+	/**
+	 * Returns the databases a uri applies to: the database of the account named in the uri,
+	 * or owning the row id in the uri, or else those of all accounts.  With no accounts, the
+	 * shared database is returned so that queries still have a schema to run against.
+	 */
+	private List<SQLiteOpenHelper> getDatabases(Uri uri) {
+		final ArrayList<SQLiteOpenHelper> result = new ArrayList<SQLiteOpenHelper>();
+		String account = uri.getQueryParameter(ACCOUNT_PARAMETER);
+		
+		if(account == null)
+			account = getAccountForId(uri);
+		
+		if(account != null) {
+			result.add(getAccountDatabase(account));
+		} else {
+			for(Account a : AccountManager.get(getContext()).getAccountsByType(Constants.ACCOUNT_TYPE)) {
+				result.add(getAccountDatabase(a.name));
+			}
+			
+			if(result.isEmpty())
+				result.add(dbHelper);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the database a new row is written to, chosen by the account named in the uri or
+	 * in the row itself.
+	 */
+	private SQLiteDatabase getWritableDatabase(Uri uri, ContentValues values) {
+		String account = uri.getQueryParameter(ACCOUNT_PARAMETER);
+		
+		if(account == null && values != null)
+			account = values.getAsString(Bookmark.Account);
+		
+		if(account == null)
+			throw new IllegalArgumentException("No account given for " + uri);
+		
+		return getAccountDatabase(account).getWritableDatabase();
+	}
+	
+	private static boolean isAccountTable(int match) {
+		switch(match) {
+			case Bookmarks:
+			case BookmarkId:
+			case Tags:
+			case Notes:
+			case NoteId:
+			case UnreadCount:
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * Runs a query against each database the uri applies to, merging the results.  Rows from
+	 * different accounts are appended rather than merged in order, so a query spanning more
+	 * than one account may not be sorted; its limit applies to the merged rows as a whole.
+	 * Everything shown in lists names an account, leaving global search suggestions and
+	 * lookups of rows from before accounts had databases to query across accounts.
+	 */
+	private Cursor query(SQLiteQueryBuilder qb, Uri uri, String[] projection, String selection, 
+			String[] selectionArgs, String sortOrder, String limit) {
+		
+		final List<SQLiteOpenHelper> helpers = getDatabases(uri);
+		
+		if(helpers.size() > 1 && sortOrder != null)
+			throw new IllegalArgumentException("Sorted query without an account: " + uri);
+		
+		final ArrayList<Cursor> cursors = new ArrayList<Cursor>(helpers.size());
+		int remaining = limit != null ? Integer.parseInt(limit) : -1;
+		
+		for(SQLiteOpenHelper helper : helpers) {
+			final Cursor c = qb.query(helper.getReadableDatabase(), projection, selection, selectionArgs, null, null, sortOrder, 
+				remaining >= 0 ? Integer.toString(remaining) : null);
+			cursors.add(c);
+			
+			if(remaining >= 0) {
+				remaining -= c.getCount();
+				if(remaining <= 0)
+					break;
+			}
+		}
+		
+		final Cursor c = cursors.size() == 1 ? cursors.get(0) : new MergeCursor(cursors.toArray(new Cursor[cursors.size()]));
+		c.setNotificationUri(getContext().getContentResolver(), uri);
+		return c;
+	}
+	
+	@Override
+	public Bundle call(String method, String arg, Bundle extras) {
+		if(METHOD_DROP_REMOVED_ACCOUNTS.equals(method)) {
+			dropRemovedAccounts();
+			return null;
+		} else if(METHOD_DROP_ACCOUNTS.equals(method)) {
+			dropAccounts(extras.getStringArrayList(EXTRA_ACCOUNTS), extras.getBoolean(EXTRA_INVERSE));
+			return null;
+		} else if(METHOD_INGEST_BOOKMARKS.equals(method)) {
+			extras.setClassLoader(Bookmark.class.getClassLoader());
+			final ArrayList<Bookmark> bookmarks = extras.getParcelableArrayList(EXTRA_BOOKMARKS);
+			final ArrayList<ContentProviderOperation> operations = extras.getParcelableArrayList(EXTRA_OPERATIONS);
+			
+			ingestBookmarks(arg, bookmarks, operations, extras.getStringArrayList(EXTRA_SEEN), extras.getLong(EXTRA_PASS));
+			return null;
+		} else if(METHOD_DELETE_UNSEEN.equals(method)) {
+			final Bundle result = new Bundle();
+			result.putInt(EXTRA_COUNT, deleteUnseen(arg, extras.getLong(EXTRA_PASS)));
+			return result;
+		}
+		
+		return super.call(method, arg, extras);
+	}
+	
+	private void ingestBookmarks(String account, ArrayList<Bookmark> bookmarks, ArrayList<ContentProviderOperation> operations, 
+			ArrayList<String> seen, long pass) {
+		
+		final SQLiteDatabase db = getAccountDatabase(account).getWritableDatabase();
+		final long start = SystemClock.elapsedRealtime();
+		final BookmarkInserter inserter = new BookmarkInserter(db, account);
+		final SQLiteStatement seenStatement = db.compileStatement("INSERT OR REPLACE INTO " + SEEN_TABLE_NAME + 
+				" (HASH, PASS) VALUES (?, ?)");
+		final HashSet<Uri> notifications = new HashSet<Uri>();
+		
+		mBatchNotifications.set(notifications);
+		
+		db.beginTransaction();
+		try {
+			for(Bookmark b : bookmarks) {
+				inserter.insert(b);
+			}
+			
+			if(operations != null) {
+				final ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+				for(int i = 0; i < results.length; i++) {
+					results[i] = operations.get(i).apply(this, results, i);
+				}
+			}
+			
+			if(seen != null) {
+				seenStatement.bindLong(2, pass);
+				for(String hash : seen) {
+					seenStatement.bindString(1, hash);
+					seenStatement.executeInsert();
+				}
+			}
+			db.setTransactionSuccessful();
+		} catch (OperationApplicationException e) {
+			throw new SQLException("Failed to apply sync operations: " + e.getMessage());
+		} finally {
+			db.endTransaction();
+			mBatchNotifications.remove();
+			inserter.close();
+			seenStatement.close();
+		}
+		
+		final long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+		Log.d("BookmarkContentProvider", "Ingested " + bookmarks.size() + " bookmarks in " + elapsed + "ms, " 
+			+ (bookmarks.size() * 1000 / elapsed) + " rows/s");
+		
+		notifications.add(Bookmark.CONTENT_URI);
+		for(Uri uri : notifications) {
+			getContext().getContentResolver().notifyChange(uri, null, false);
+		}
+	}
+	
+	private int deleteUnseen(String account, long pass) {
+		final SQLiteDatabase db = getAccountDatabase(account).getWritableDatabase();
+		int count;
+		
+		db.beginTransaction();
+		try {
+			count = db.delete(BOOKMARK_TABLE_NAME, Bookmark.Synced + "=1 AND " + Bookmark.Hash + 
+					" NOT IN (SELECT HASH FROM " + SEEN_TABLE_NAME + " WHERE PASS=?)", new String[]{Long.toString(pass)});
+			db.delete(SEEN_TABLE_NAME, null, null);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		
+		if(count > 0)
+			notifyChange(Bookmark.CONTENT_URI, false);
+		
+		return count;
+	}
+	
+	/**
+	 * Deletes the database files, and pending changes, of accounts removed from the device.
+	 */
+	private void dropRemovedAccounts() {
+		final ArrayList<String> accounts = new ArrayList<String>();
+		for(Account a : AccountManager.get(getContext()).getAccountsByType(Constants.ACCOUNT_TYPE)) {
+			accounts.add(a.name);
+		}
+		
+		dropAccounts(accounts, true);
+	}
+	
+	/**
+	 * Deletes the database files, and pending changes, of the given accounts, or of every
+	 * other account if inverse is set.
+	 */
+	private synchronized void dropAccounts(List<String> list, boolean inverse) {
+		final HashSet<String> accounts = new HashSet<String>(list);
+		
+		final SQLiteDatabase global = dbHelper.getWritableDatabase();
+		final Cursor c = global.query(ACCOUNT_DATABASE_TABLE_NAME, new String[]{"ACCOUNT", "NUMBER"}, null, null, null, null, null);
+		boolean dropped = false;
+		
+		while(c.moveToNext()) {
+			final String account = c.getString(0);
+			
+			if(accounts.contains(account) != inverse) {
+				final AccountDatabaseHelper helper = mAccountDatabases.remove(account);
+				if(helper != null)
+					helper.close();
+				
+				getContext().deleteDatabase(getAccountDatabaseName(c.getInt(1)));
+				global.delete(ACCOUNT_DATABASE_TABLE_NAME, "ACCOUNT=?", new String[]{account});
+				global.delete(OUTBOX_TABLE_NAME, Outbox.Account + "=?", new String[]{account});
+				dropped = true;
+				
+				Log.d("BookmarkContentProvider", "Dropped account database");
+			}
+		}
+		c.close();
+		
+		if(dropped) {
+			getContext().getContentResolver().notifyChange(Bookmark.CONTENT_URI, null, false);
+			getContext().getContentResolver().notifyChange(Tag.CONTENT_URI, null, false);
+			getContext().getContentResolver().notifyChange(Note.CONTENT_URI, null, false);
 		}
 	}
 	
@@ -172,16 +710,24 @@ public class BookmarkContentProvider extends ContentProvider {
 		int count;
 		switch (sURIMatcher.match(uri)) {
 			case Bookmarks:
-				count = db.delete(BOOKMARK_TABLE_NAME, where, whereArgs);
-				getContext().getContentResolver().notifyChange(uri, null, false);
+				count = deleteAccountRows(BOOKMARK_TABLE_NAME, uri, where, whereArgs);
+				notifyChange(uri, false);
 				break;
 			case Tags:
-				count = db.delete(TAG_TABLE_NAME, where, whereArgs);
-				getContext().getContentResolver().notifyChange(uri, null, false);
+				count = deleteAccountRows(TAG_TABLE_NAME, uri, where, whereArgs);
+				notifyChange(uri, false);
 				break;
 			case Notes:
-				count = db.delete(NOTE_TABLE_NAME, where, whereArgs);
-				getContext().getContentResolver().notifyChange(uri, null, false);
+				count = deleteAccountRows(NOTE_TABLE_NAME, uri, where, whereArgs);
+				notifyChange(uri, false);
+				break;
+			case Outboxes:
+				count = db.delete(OUTBOX_TABLE_NAME, where, whereArgs);
+				notifyChange(uri, false);
+				break;
+			case SyncHistories:
+				count = db.delete(SYNC_HISTORY_TABLE_NAME, where, whereArgs);
+				notifyChange(uri, false);
 				break;
 			default:
 				throw new IllegalArgumentException("Unknown URI " + uri);
@@ -189,6 +735,14 @@ public class BookmarkContentProvider extends ContentProvider {
 		
 		return count;
 	}
+	
+	private int deleteAccountRows(String table, Uri uri, String where, String[] whereArgs) {
+		int count = 0;
+		for(SQLiteOpenHelper helper : getDatabases(uri)) {
+			count += helper.getWritableDatabase().delete(table, where, whereArgs);
+		}
+		return count;
+	}
 
 	@Override
 	public String getType(Uri uri) {
@@ -205,6 +759,10 @@ public class BookmarkContentProvider extends ContentProvider {
 				return Note.CONTENT_TYPE;
 			case UnreadCount:
 				return Bookmark.CONTENT_TYPE;
+			case Outboxes:
+				return Outbox.CONTENT_TYPE;
+			case SyncHistories:
+				return SyncHistory.CONTENT_TYPE;
 			default:
 				throw new IllegalArgumentException("Unknown Uri " + uri);
 		}
@@ -220,39 +778,75 @@ public class BookmarkContentProvider extends ContentProvider {
 				return insertTag(uri, values);
 			case Notes:
 				return insertNote(uri, values);
+			case Outboxes:
+				return insertOutbox(uri, values);
+			case SyncHistories:
+				return insertSyncHistory(uri, values);
 			default:
 				throw new IllegalArgumentException("Unknown Uri: " + uri);
 		}
 	}
 	
 	private Uri insertBookmark(Uri uri, ContentValues values){
-		db = dbHelper.getWritableDatabase();
+		db = getWritableDatabase(uri, values);
 		long rowId = db.insert(BOOKMARK_TABLE_NAME, "", values);
 		if(rowId > 0) {
 			Uri rowUri = ContentUris.appendId(BookmarkContent.Bookmark.CONTENT_URI.buildUpon(), rowId).build();
-			getContext().getContentResolver().notifyChange(rowUri, null, true);
+			notifyChange(rowUri, false);
 			return rowUri;
 		}
 		throw new SQLException("Failed to insert row into " + uri);
 	}
 
 	private Uri insertTag(Uri uri, ContentValues values){
-		db = dbHelper.getWritableDatabase();
+		db = getWritableDatabase(uri, values);
 		long rowId = db.insert(TAG_TABLE_NAME, "", values);
 		if(rowId > 0) {
 			Uri rowUri = ContentUris.appendId(TagContent.Tag.CONTENT_URI.buildUpon(), rowId).build();
-			getContext().getContentResolver().notifyChange(rowUri, null);
+			notifyChange(rowUri, false);
 			return rowUri;
 		}
 		throw new SQLException("Failed to insert row into " + uri);
 	}
 	
 	private Uri insertNote(Uri uri, ContentValues values){
-		db = dbHelper.getWritableDatabase();
+		db = getWritableDatabase(uri, values);
 		long rowId = db.insert(NOTE_TABLE_NAME, "", values);
 		if(rowId > 0) {
 			Uri rowUri = ContentUris.appendId(NoteContent.Note.CONTENT_URI.buildUpon(), rowId).build();
-			getContext().getContentResolver().notifyChange(rowUri, null);
+			notifyChange(rowUri, false);
+			return rowUri;
+		}
+		throw new SQLException("Failed to insert row into " + uri);
+	}
+	
+	/**
+	 * Queues a pending change.  An existing entry for the same bookmark is replaced, so
+	 * that repeated edits, or an edit followed by a delete, collapse into the last operation.
+	 */
+	private Uri insertOutbox(Uri uri, ContentValues values){
+		db = dbHelper.getWritableDatabase();
+		long rowId = db.insertWithOnConflict(OUTBOX_TABLE_NAME, "", values, SQLiteDatabase.CONFLICT_REPLACE);
+		if(rowId > 0) {
+			Uri rowUri = ContentUris.appendId(Outbox.CONTENT_URI.buildUpon(), rowId).build();
+			notifyChange(rowUri, false);
+			return rowUri;
+		}
+		throw new SQLException("Failed to insert row into " + uri);
+	}
+	
+	/**
+	 * Records a sync run, dropping the oldest runs beyond the size of the rolling history.
+	 */
+	private Uri insertSyncHistory(Uri uri, ContentValues values){
+		db = dbHelper.getWritableDatabase();
+		long rowId = db.insert(SYNC_HISTORY_TABLE_NAME, "", values);
+		if(rowId > 0) {
+			db.delete(SYNC_HISTORY_TABLE_NAME, "_id <= ?", 
+				new String[]{Long.toString(rowId - SyncHistory.MAX_ENTRIES)});
+			
+			Uri rowUri = ContentUris.appendId(SyncHistory.CONTENT_URI.buildUpon(), rowId).build();
+			notifyChange(rowUri, false);
 			return rowUri;
 		}
 		throw new SQLException("Failed to insert row into " + uri);
@@ -296,9 +890,17 @@ public class BookmarkContentProvider extends ContentProvider {
 			case NoteSearchSuggest:
 				String noteQuery = uri.getLastPathSegment().toLowerCase(Locale.ENGLISH);
 				return getSearchCursor(getNoteSearchSuggestions(noteQuery, true));
+			case Outboxes:
+				return getTable(OUTBOX_TABLE_NAME, uri, projection, selection, selectionArgs, sortOrder);
+			case SyncHistories:
+				return getTable(SYNC_HISTORY_TABLE_NAME, uri, projection, selection, selectionArgs, sortOrder);
 			case UnreadCount:
-				SQLiteDatabase rdb = dbHelper.getReadableDatabase();
-				return rdb.rawQuery("select count(*) as Count, ACCOUNT as Account from " + BOOKMARK_TABLE_NAME + " where " + Bookmark.ToRead + "=1 group by " + Bookmark.Account, null);
+				final List<SQLiteOpenHelper> helpers = getDatabases(uri);
+				final Cursor[] cursors = new Cursor[helpers.size()];
+				for(int i = 0; i < cursors.length; i++) {
+					cursors[i] = helpers.get(i).getReadableDatabase().rawQuery("select count(*) as Count, ACCOUNT as Account from " + BOOKMARK_TABLE_NAME + " where " + Bookmark.ToRead + "=1 group by " + Bookmark.Account, null);
+				}
+				return cursors.length == 1 ? cursors[0] : new MergeCursor(cursors);
 			default:
 				throw new IllegalArgumentException("Unknown Uri: " + uri);
 		}
@@ -310,12 +912,9 @@ public class BookmarkContentProvider extends ContentProvider {
 	
 	private Cursor getBookmark(Uri uri, String[] projection, String selection,	String[] selectionArgs, String sortOrder) {
 		SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
-		SQLiteDatabase rdb = dbHelper.getReadableDatabase();
 		qb.setTables(BOOKMARK_TABLE_NAME);
 		qb.appendWhere(Bookmark._ID + "=" + uri.getPathSegments().get(Bookmark.BOOKMARK_ID_PATH_POSITION));
-		Cursor c = qb.query(rdb, projection, selection, selectionArgs, null, null, sortOrder, null);
-		c.setNotificationUri(getContext().getContentResolver(), uri);
-		return c;
+		return query(qb, uri, projection, selection, selectionArgs, sortOrder, null);
 	}
 	
 	private Cursor getBookmarks(Uri uri, String[] projection, String selection,	String[] selectionArgs, String sortOrder) {
@@ -324,11 +923,8 @@ public class BookmarkContentProvider extends ContentProvider {
 	
 	private Cursor getBookmarks(Uri uri, String[] projection, String selection,	String[] selectionArgs, String sortOrder, String limit) {
 		SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
-		SQLiteDatabase rdb = dbHelper.getReadableDatabase();
 		qb.setTables(BOOKMARK_TABLE_NAME);
-		Cursor c = qb.query(rdb, projection, selection, selectionArgs, null, null, sortOrder, limit);
-		c.setNotificationUri(getContext().getContentResolver(), uri);
-		return c;
+		return query(qb, uri, projection, selection, selectionArgs, sortOrder, limit);
 	}
 	
 	private Cursor getTags(Uri uri, String[] projection, String selection,	String[] selectionArgs, String sortOrder) {
@@ -337,21 +933,15 @@ public class BookmarkContentProvider extends ContentProvider {
 	
 	private Cursor getTags(Uri uri, String[] projection, String selection,	String[] selectionArgs, String sortOrder, String limit) {
 		SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
-		SQLiteDatabase rdb = dbHelper.getReadableDatabase();
 		qb.setTables(TAG_TABLE_NAME);
-		Cursor c = qb.query(rdb, projection, selection, selectionArgs, null, null, sortOrder, limit);
-		c.setNotificationUri(getContext().getContentResolver(), uri);
-		return c;
+		return query(qb, uri, projection, selection, selectionArgs, sortOrder, limit);
 	}
 	
 	private Cursor getNote(Uri uri, String[] projection, String selection,	String[] selectionArgs, String sortOrder) {
 		SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
-		SQLiteDatabase rdb = dbHelper.getReadableDatabase();
 		qb.setTables(NOTE_TABLE_NAME);
 		qb.appendWhere(Note._ID + "=" + uri.getPathSegments().get(Note.NOTE_ID_PATH_POSITION));
-		Cursor c = qb.query(rdb, projection, selection, selectionArgs, null, null, sortOrder, null);
-		c.setNotificationUri(getContext().getContentResolver(), uri);
-		return c;
+		return query(qb, uri, projection, selection, selectionArgs, sortOrder, null);
 	}
 	
 	private Cursor getNotes(Uri uri, String[] projection, String selection,	String[] selectionArgs, String sortOrder) {
@@ -360,9 +950,15 @@ public class BookmarkContentProvider extends ContentProvider {
 	
 	private Cursor getNotes(Uri uri, String[] projection, String selection,	String[] selectionArgs, String sortOrder, String limit) {
 		SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
-		SQLiteDatabase rdb = dbHelper.getReadableDatabase();
 		qb.setTables(NOTE_TABLE_NAME);
-		Cursor c = qb.query(rdb, projection, selection, selectionArgs, null, null, sortOrder, limit);
+		return query(qb, uri, projection, selection, selectionArgs, sortOrder, limit);
+	}
+	
+	private Cursor getTable(String table, Uri uri, String[] projection, String selection,	String[] selectionArgs, String sortOrder) {
+		SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
+		SQLiteDatabase rdb = dbHelper.getReadableDatabase();
+		qb.setTables(table);
+		Cursor c = qb.query(rdb, projection, selection, selectionArgs, null, null, sortOrder, null);
 		c.setNotificationUri(getContext().getContentResolver(), uri);
 		return c;
 	}
@@ -406,18 +1002,15 @@ public class BookmarkContentProvider extends ContentProvider {
 			
 			selectionlist.add("%" + s + "%");
 			selectionlist.add("%" + s + "%");
-			
-			if(accountSpecific){
-				bookmarkList.add(Bookmark.Account + "=?");
-				selectionlist.add(app.getUsername());
-			}
 		}
 		
 		String selection = TextUtils.join(" AND ", bookmarkList);
 		
 		String[] projection = new String[] {BaseColumns._ID, Bookmark.Description, Bookmark.Url, Bookmark.Account};
+		
+		Uri uri = accountSpecific ? accountUri(Bookmark.CONTENT_URI, app.getUsername()) : Bookmark.CONTENT_URI;
 
-		Cursor c = getBookmarks(Bookmark.CONTENT_URI, projection, selection, selectionlist.toArray(new String[]{}), null, SuggestionLimit);
+		Cursor c = getBookmarks(uri, projection, selection, selectionlist.toArray(new String[]{}), null, SuggestionLimit);
 		
 		if(c.moveToFirst()){
 			int descColumn = c.getColumnIndex(Bookmark.Description);
@@ -480,18 +1073,15 @@ public class BookmarkContentProvider extends ContentProvider {
 		for(String s : tags){
 			tagList.add(Tag.Name + " LIKE ?");
 			selectionlist.add("%" + s + "%");
-			
-			if(accountSpecific){
-				tagList.add(Bookmark.Account + "=?");
-				selectionlist.add(app.getUsername());
-			}
 		}
 		
 		String selection = TextUtils.join(" AND ", tagList);
 
 		String[] projection = new String[] {BaseColumns._ID, Tag.Name, Tag.Count, Tag.Account};
+		
+		Uri uri = accountSpecific ? accountUri(Tag.CONTENT_URI, app.getUsername()) : Tag.CONTENT_URI;
 
-		Cursor c = getTags(Tag.CONTENT_URI, projection, selection, selectionlist.toArray(new String[]{}), null, SuggestionLimit);
+		Cursor c = getTags(uri, projection, selection, selectionlist.toArray(new String[]{}), null, SuggestionLimit);
 		
 		if(c.moveToFirst()){
 			int nameColumn = c.getColumnIndex(Tag.Name);
@@ -545,18 +1135,15 @@ public class BookmarkContentProvider extends ContentProvider {
 					Note.Text + " LIKE ?)");
 			selectionlist.add("%" + s + "%");
 			selectionlist.add("%" + s + "%");
-			
-			if(accountSpecific){
-				noteList.add(Bookmark.Account + "=?");
-				selectionlist.add(app.getUsername());
-			}
 		}
 		
 		String selection = TextUtils.join(" AND ", noteList);
 
 		String[] projection = new String[] {BaseColumns._ID, Note.Title, Note.Text, Note.Account};
+		
+		Uri uri = accountSpecific ? accountUri(Note.CONTENT_URI, app.getUsername()) : Note.CONTENT_URI;
 
-		Cursor c = getNotes(Tag.CONTENT_URI, projection, selection, selectionlist.toArray(new String[]{}), null, SuggestionLimit);
+		Cursor c = getNotes(uri, projection, selection, selectionlist.toArray(new String[]{}), null, SuggestionLimit);
 		
 		if(c.moveToFirst()){
 			int titleColumn = c.getColumnIndex(Note.Title);
@@ -632,24 +1219,97 @@ public class BookmarkContentProvider extends ContentProvider {
 		switch (sURIMatcher.match(uri)) {
 			case Bookmarks:
 			case BookmarkId:
-				count = db.update(BOOKMARK_TABLE_NAME, values, selection, selectionArgs);
+				count = updateAccountRows(BOOKMARK_TABLE_NAME, uri, values, selection, selectionArgs);
 				break;
 			case Tags:
-				count = db.update(TAG_TABLE_NAME, values, selection, selectionArgs);
+				count = updateAccountRows(TAG_TABLE_NAME, uri, values, selection, selectionArgs);
 				break;
 			case Notes:
-				count = db.update(NOTE_TABLE_NAME, values, selection, selectionArgs);
+				count = updateAccountRows(NOTE_TABLE_NAME, uri, values, selection, selectionArgs);
+				break;
+			case Outboxes:
+				count = db.update(OUTBOX_TABLE_NAME, values, selection, selectionArgs);
 				break;
 			default:
 				throw new IllegalArgumentException("Unknown URI " + uri);
 		}
 		
-		boolean syncOnly = values.size() == 1 && values.containsKey(Bookmark.Synced) && values.getAsInteger(Bookmark.Synced) == 1;
-		
-		getContext().getContentResolver().notifyChange(uri, null, !syncOnly);
+		// local edits reach the server through the outbox, see UploadScheduler
+		notifyChange(uri, false);
+		return count;
+	}
+	
+	private int updateAccountRows(String table, Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+		int count = 0;
+		for(SQLiteOpenHelper helper : getDatabases(uri)) {
+			count += helper.getWritableDatabase().update(table, values, selection, selectionArgs);
+		}
 		return count;
 	}
 	
+	/**
+	 * Applies a batch of operations in a single transaction.  Change notifications for
+	 * the individual operations are coalesced into one notification per uri, sent once
+	 * the transaction has been committed.
+	 */
+	@Override
+	public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations) 
+		throws OperationApplicationException {
+		
+		// every database the batch writes to takes part, each in its own transaction
+		final LinkedHashSet<SQLiteDatabase> databases = new LinkedHashSet<SQLiteDatabase>();
+		databases.add(dbHelper.getWritableDatabase());
+		for(ContentProviderOperation operation : operations) {
+			if(isAccountTable(sURIMatcher.match(operation.getUri()))) {
+				for(SQLiteOpenHelper helper : getDatabases(operation.getUri())) {
+					databases.add(helper.getWritableDatabase());
+				}
+			}
+		}
+		
+		final HashSet<Uri> notifications = new HashSet<Uri>();
+		final ArrayList<SQLiteDatabase> started = new ArrayList<SQLiteDatabase>();
+		ContentProviderResult[] results;
+		
+		mBatchNotifications.set(notifications);
+		
+		try {
+			for(SQLiteDatabase db : databases) {
+				db.beginTransaction();
+				started.add(db);
+			}
+			
+			results = super.applyBatch(operations);
+			
+			for(SQLiteDatabase db : started) {
+				db.setTransactionSuccessful();
+			}
+		} finally {
+			for(int i = started.size() - 1; i >= 0; i--) {
+				started.get(i).endTransaction();
+			}
+			mBatchNotifications.remove();
+		}
+		
+		for(Uri uri : notifications) {
+			getContext().getContentResolver().notifyChange(uri, null, false);
+		}
+		
+		return results;
+	}
+	
+	private void notifyChange(Uri uri, boolean syncToNetwork) {
+		final HashSet<Uri> batch = mBatchNotifications.get();
+		
+		if(batch != null) {
+			// collapse row uris into the uri of their table
+			batch.add(new Uri.Builder().scheme(uri.getScheme()).authority(uri.getAuthority())
+				.appendPath(uri.getPathSegments().get(0)).build());
+		} else {
+			getContext().getContentResolver().notifyChange(uri, null, syncToNetwork);
+		}
+	}
+	
 	public DatabaseHelper getDatabaseHelper(){
 		return dbHelper;
 	}
@@ -661,13 +1321,13 @@ public class BookmarkContentProvider extends ContentProvider {
 		
 		switch(sURIMatcher.match(uri)) {
 			case Bookmarks:
-				result = bulkLoad(BOOKMARK_TABLE_NAME, values);
+				result = bulkLoad(BOOKMARK_TABLE_NAME, uri, values);
 				break;
 			case Tags:
-				result = bulkLoad(TAG_TABLE_NAME, values);
+				result = bulkLoad(TAG_TABLE_NAME, uri, values);
 				break;
 			case Notes:
-				result = bulkLoad(NOTE_TABLE_NAME, values);
+				result = bulkLoad(NOTE_TABLE_NAME, uri, values);
 				break;
 			default:
 				throw new IllegalArgumentException("Unknown Uri: " + uri);
@@ -678,22 +1338,37 @@ public class BookmarkContentProvider extends ContentProvider {
 		return result;
 	}
 	
-	private int bulkLoad(String table, ContentValues[] values){
-		db = dbHelper.getWritableDatabase();
+	private int bulkLoad(String table, Uri uri, ContentValues[] values){
 		int inserted = 0;
 		
-		db.beginTransaction();
-		
-		try{
-			for(ContentValues v : values) {
-				db.insert(table, null, v);
-			}
+		// rows are normally all of one account, but are grouped by database in case they are not
+		final HashMap<SQLiteDatabase, ArrayList<ContentValues>> groups = new HashMap<SQLiteDatabase, ArrayList<ContentValues>>();
+		for(ContentValues v : values) {
+			db = getWritableDatabase(uri, v);
 			
-			db.setTransactionSuccessful();
-			inserted = values.length;
+			ArrayList<ContentValues> group = groups.get(db);
+			if(group == null) {
+				group = new ArrayList<ContentValues>();
+				groups.put(db, group);
+			}
+			group.add(v);
 		}
-		finally{
-			db.endTransaction();
+		
+		for(Map.Entry<SQLiteDatabase, ArrayList<ContentValues>> group : groups.entrySet()) {
+			db = group.getKey();
+			db.beginTransaction();
+			
+			try{
+				for(ContentValues v : group.getValue()) {
+					db.insert(table, null, v);
+				}
+				
+				db.setTransactionSuccessful();
+				inserted += group.getValue().size();
+			}
+			finally{
+				db.endTransaction();
+			}
 		}
 
 		return inserted;
@@ -707,6 +1382,8 @@ public class BookmarkContentProvider extends ContentProvider {
         matcher.addURI(AUTHORITY, "note", Notes);
         matcher.addURI(AUTHORITY, "note/#", NoteId);
         matcher.addURI(AUTHORITY, "unreadcount", UnreadCount);
+        matcher.addURI(AUTHORITY, "outbox", Outboxes);
+        matcher.addURI(AUTHORITY, "synchistory", SyncHistories);
         matcher.addURI(AUTHORITY, "global/" + SearchManager.SUGGEST_URI_PATH_QUERY, GlobalSearchSuggest);
         matcher.addURI(AUTHORITY, "global/" + SearchManager.SUGGEST_URI_PATH_QUERY + "/*", GlobalSearchSuggest);
         matcher.addURI(AUTHORITY, "main/" + SearchManager.SUGGEST_URI_PATH_QUERY, SearchSuggest);
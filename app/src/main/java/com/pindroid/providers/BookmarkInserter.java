@@ -0,0 +1,84 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.providers;
+
+import java.io.Closeable;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.pindroid.providers.BookmarkContent.Bookmark;
+
+/**
+ * Inserts bookmarks received from the server through one compiled statement.  The fields of
+ * each parsed bookmark are bound straight into the statement, so no ContentValues is built
+ * and the insert sql is only parsed once; the Bookmark objects themselves are still needed
+ * to diff the page against local state.  The account is the same for every row and is bound when
+ * the inserter is created.  Meant to be used inside a transaction.
+ */
+public class BookmarkInserter implements Closeable {
+	
+	private static final String SQL = "INSERT INTO " + BookmarkContentProvider.BOOKMARK_TABLE_NAME + " (" + 
+		Bookmark.Description + ", " + Bookmark.Url + ", " + Bookmark.Notes + ", " + Bookmark.Tags + ", " + 
+		Bookmark.Hash + ", " + Bookmark.Meta + ", " + Bookmark.Time + ", " + Bookmark.ToRead + ", " + 
+		Bookmark.Shared + ", " + Bookmark.Account + ", " + Bookmark.Synced + ", " + Bookmark.Deleted + 
+		") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 1, 0)";
+	
+	private final SQLiteStatement mStatement;
+	
+	/**
+	 * @param db The database of the account.
+	 * @param account The account the bookmarks belong to.
+	 */
+	public BookmarkInserter(SQLiteDatabase db, String account) {
+		mStatement = db.compileStatement(SQL);
+		mStatement.bindString(10, account);
+	}
+	
+	/**
+	 * @return The row id of the new bookmark, or -1 if it could not be inserted.
+	 */
+	public long insert(Bookmark b) {
+		bind(1, b.getDescription());
+		bind(2, b.getUrl());
+		bind(3, b.getNotes());
+		bind(4, b.getTagString());
+		bind(5, b.getHash());
+		bind(6, b.getMeta());
+		mStatement.bindLong(7, b.getTime());
+		mStatement.bindLong(8, b.getToRead() ? 1 : 0);
+		mStatement.bindLong(9, b.getShared() ? 1 : 0);
+		
+		return mStatement.executeInsert();
+	}
+	
+	private void bind(int index, String value) {
+		if(value != null)
+			mStatement.bindString(index, value);
+		else mStatement.bindNull(index);
+	}
+	
+	public void close() {
+		mStatement.close();
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.providers;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+public class OutboxContent {
+
+	/**
+	 * A pending local change that has not been sent to Pinboard yet.  There is at most one
+	 * entry per bookmark hash and account, holding the last operation applied locally.
+	 */
+	public static class Outbox implements BaseColumns {
+		public static final Uri CONTENT_URI = Uri.parse("content://" + 
+				BookmarkContentProvider.AUTHORITY + "/outbox");
+		
+		public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.PinDroid.outbox";
+		
+		public static final String Account = "ACCOUNT";
+		public static final String Hash = "HASH";
+		public static final String Url = "URL";
+		public static final String Operation = "OPERATION";
+		public static final String Created = "CREATED";
+		
+		public static final int OPERATION_UPSERT = 1;
+		public static final int OPERATION_DELETE = 2;
+		
+		private int mId = 0;
+		private String mAccount = null;
+		private String mHash = null;
+		private String mUrl = null;
+		private int mOperation = 0;
+		private long mCreated = 0;
+		
+		public int getId(){
+			return mId;
+		}
+		
+		public String getAccount(){
+			return mAccount;
+		}
+		
+		public String getHash(){
+			return mHash;
+		}
+		
+		public String getUrl(){
+			return mUrl;
+		}
+		
+		public int getOperation(){
+			return mOperation;
+		}
+		
+		public long getCreated(){
+			return mCreated;
+		}
+		
+		public Outbox(int id, String account, String hash, String url, int operation, long created) {
+			mId = id;
+			mAccount = account;
+			mHash = hash;
+			mUrl = url;
+			mOperation = operation;
+			mCreated = created;
+		}
+	}
+}
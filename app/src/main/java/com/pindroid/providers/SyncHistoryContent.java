@@ -0,0 +1,142 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.providers;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+public class SyncHistoryContent {
+
+	/**
+	 * The measurements of one sync run.  Only the most recent runs are kept.
+	 */
+	public static class SyncHistory implements BaseColumns {
+		public static final Uri CONTENT_URI = Uri.parse("content://" + 
+				BookmarkContentProvider.AUTHORITY + "/synchistory");
+		
+		public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.PinDroid.synchistory";
+		
+		public static final String Account = "ACCOUNT";
+		public static final String Started = "STARTED";
+		public static final String Duration = "DURATION";
+		public static final String Result = "RESULT";
+		public static final String Phases = "PHASES";
+		public static final String Requests = "REQUESTS";
+		public static final String Retries = "RETRIES";
+		public static final String CompressedBytes = "COMPRESSED_BYTES";
+		public static final String Bytes = "BYTES";
+		public static final String Inserts = "INSERTS";
+		public static final String Updates = "UPDATES";
+		public static final String Deletes = "DELETES";
+		
+		public static final int MAX_ENTRIES = 50;
+		
+		private String mAccount = null;
+		private long mStarted = 0;
+		private long mDuration = 0;
+		private String mResult = null;
+		private String mPhases = null;
+		private long mRequests = 0;
+		private long mRetries = 0;
+		private long mCompressedBytes = 0;
+		private long mBytes = 0;
+		private long mInserts = 0;
+		private long mUpdates = 0;
+		private long mDeletes = 0;
+		
+		public String getAccount(){
+			return mAccount;
+		}
+		
+		public long getStarted(){
+			return mStarted;
+		}
+		
+		public long getDuration(){
+			return mDuration;
+		}
+		
+		public String getResult(){
+			return mResult;
+		}
+		
+		/**
+		 * The time spent in each phase, as a comma separated list of name=milliseconds pairs.
+		 */
+		public String getPhases(){
+			return mPhases;
+		}
+		
+		public long getRequests(){
+			return mRequests;
+		}
+		
+		public long getRetries(){
+			return mRetries;
+		}
+		
+		public long getCompressedBytes(){
+			return mCompressedBytes;
+		}
+		
+		public long getBytes(){
+			return mBytes;
+		}
+		
+		public long getInserts(){
+			return mInserts;
+		}
+		
+		public long getUpdates(){
+			return mUpdates;
+		}
+		
+		public long getDeletes(){
+			return mDeletes;
+		}
+		
+		public SyncHistory(String account, long started, long duration, String result, String phases, 
+			long requests, long retries, long compressedBytes, long bytes, long inserts, long updates, long deletes) {
+			
+			mAccount = account;
+			mStarted = started;
+			mDuration = duration;
+			mResult = result;
+			mPhases = phases;
+			mRequests = requests;
+			mRetries = retries;
+			mCompressedBytes = compressedBytes;
+			mBytes = bytes;
+			mInserts = inserts;
+			mUpdates = updates;
+			mDeletes = deletes;
+		}
+		
+		@Override
+		public String toString() {
+			return mAccount + " " + mResult + " in " + mDuration + "ms [" + mPhases + "] " + 
+				mRequests + " requests, " + mRetries + " retries, " + mCompressedBytes + "/" + mBytes + 
+				" bytes, +" + mInserts + " ~" + mUpdates + " -" + mDeletes;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.syncadapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import android.content.ContentProviderOperation;
+import android.net.Uri;
+
+import com.pindroid.platform.BookmarkManager;
+import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.providers.BookmarkContentProvider;
+
+/**
+ * Computes the provider operations needed to bring the local bookmarks of an
+ * account in line with a page of bookmarks from the server, using the hash and
+ * meta attributes returned by the Pinboard api.  A bookmark whose meta has not
+ * changed is left alone.  Bookmarks not yet stored locally are collected for
+ * {@link BookmarkManager#Ingest} instead.
+ */
+public class BookmarkDiff {
+
+	private final ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+	private final ArrayList<Bookmark> inserts = new ArrayList<Bookmark>();
+	private int updates = 0;
+	
+	private BookmarkDiff() {
+	}
+	
+	/**
+	 * Compares bookmarks received from the server against the local sync state.
+	 * 
+	 * @param remote The bookmarks received from the server.
+	 * @param local The local sync state keyed by hash, as returned by {@link BookmarkManager#GetSyncStates}.
+	 * @param account The account being synced.
+	 * @return The resulting diff.
+	 */
+	public static BookmarkDiff compute(List<Bookmark> remote, Map<String, Bookmark> local, String account) {
+		final BookmarkDiff diff = new BookmarkDiff();
+		final Uri uri = BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, account);
+		
+		for(Bookmark b : remote) {
+			final Bookmark l = local.get(b.getHash());
+			
+			if(l == null) {
+				diff.inserts.add(b);
+			} else if(l.getSynced() != 1) {
+				// local changes that have not been uploaded yet win
+				continue;
+			} else if(b.getMeta() == null || !b.getMeta().equals(l.getMeta())) {
+				diff.operations.add(ContentProviderOperation.newUpdate(uri)
+					.withSelection(Bookmark._ID + "=?", new String[]{Integer.toString(l.getId())})
+					.withValues(BookmarkManager.ToSyncedContentValues(b, account))
+					.build());
+				diff.updates++;
+			}
+		}
+		
+		return diff;
+	}
+	
+	public ArrayList<ContentProviderOperation> getOperations() {
+		return operations;
+	}
+	
+	/**
+	 * @return The bookmarks that are new to this device.
+	 */
+	public ArrayList<Bookmark> getInsertedBookmarks() {
+		return inserts;
+	}
+	
+	public boolean isEmpty() {
+		return operations.isEmpty() && inserts.isEmpty();
+	}
+	
+	public int getInserts() {
+		return inserts.size();
+	}
+	
+	public int getUpdates() {
+		return updates;
+	}
+}
@@ -24,33 +24,46 @@ package com.pindroid.syncadapter;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.List;
-
-import org.apache.http.auth.AuthenticationException;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import android.accounts.Account;
 import android.accounts.AccountManager;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.SyncResult;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.RemoteException;
 import android.support.v4.content.LocalBroadcastManager;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.pindroid.Constants;
+import com.pindroid.client.AuthenticationException;
 import com.pindroid.client.PinboardApi;
 import com.pindroid.client.PinboardException;
+import com.pindroid.client.RetryPolicy;
 import com.pindroid.client.TooManyRequestsException;
 import com.pindroid.client.Update;
 import com.pindroid.platform.BookmarkManager;
 import com.pindroid.platform.NoteManager;
+import com.pindroid.platform.OutboxManager;
 import com.pindroid.platform.TagManager;
+import com.pindroid.providers.BookmarkContentProvider;
+import com.pindroid.providers.ContentNotFoundException;
 import com.pindroid.providers.BookmarkContent.Bookmark;
 import com.pindroid.providers.NoteContent.Note;
+import com.pindroid.providers.OutboxContent.Outbox;
 import com.pindroid.providers.TagContent.Tag;
 
 /**
@@ -61,10 +74,15 @@ public class BookmarkSyncAdapter extends AbstractThreadedSyncAdapter {
 	public static final String SYNC_FINISHED_ACTION = "sync_finished";
 
     private static final String TAG = "BookmarkSyncAdapter";
+    
+    private static final int NOTE_FETCH_THREADS = 2;
+    private static final int UPLOAD_BATCH_SIZE = 50;
+    private static final int NOTE_BATCH_SIZE = 20;
 
     private final Context mContext;
     private Account mAccount;
     private final AccountManager mAccountManager;
+    private SyncTelemetry mTelemetry;
 
     public BookmarkSyncAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
@@ -78,21 +96,33 @@ public class BookmarkSyncAdapter extends AbstractThreadedSyncAdapter {
     	boolean upload = extras.containsKey(ContentResolver.SYNC_EXTRAS_UPLOAD);
     	boolean manual = extras.containsKey(ContentResolver.SYNC_EXTRAS_IGNORE_BACKOFF) && extras.containsKey(ContentResolver.SYNC_EXTRAS_IGNORE_SETTINGS);
     	
+    	mAccount = account;
+    	mTelemetry = new SyncTelemetry(account.name);
+    	
+    	final RetryPolicy retryPolicy = RetryPolicy.get(account.name);
+    	retryPolicy.startSync();
+    	
         try {
         	if(upload){
         		Log.d(TAG, "Beginning Upload Sync");
+        		mTelemetry.phase("delete");
         		DeleteBookmarks(account, syncResult);
+        		mTelemetry.phase("upload");
         		UploadBookmarks(account, syncResult);
         	} else {
             	if(manual)
             		Log.d(TAG, "Beginning Manual Download Sync");
             	else Log.d(TAG, "Beginning Download Sync");
             	
+            	mTelemetry.phase("delete");
         		DeleteBookmarks(account, syncResult);
+        		mTelemetry.phase("upload");
         		UploadBookmarks(account, syncResult);
+        		mTelemetry.phase("update");
         		InsertBookmarks(account, syncResult);
         	}
         	
+        	mTelemetry.phase("token");
         	checkSecretToken(account);
         } catch (final ParseException e) {
             syncResult.stats.numParseExceptions++;
@@ -109,14 +139,23 @@ public class BookmarkSyncAdapter extends AbstractThreadedSyncAdapter {
         } catch (PinboardException e) {
         	syncResult.stats.numSkippedEntries++;
             Log.e(TAG, "PinboardException", e);
+        } catch (final RemoteException e) {
+        	syncResult.databaseError = true;
+            Log.e(TAG, "RemoteException", e);
+        } catch (final OperationApplicationException e) {
+        	syncResult.databaseError = true;
+            Log.e(TAG, "OperationApplicationException", e);
 		} finally {
+			retryPolicy.finishSync();
+			mTelemetry.finish(syncResult, mContext);
         	Log.d(TAG, "Finished Sync");
 			LocalBroadcastManager.getInstance(getContext()).sendBroadcast(new Intent(SYNC_FINISHED_ACTION));
         }
     }
     
     private void InsertBookmarks(Account account, SyncResult syncResult) 
-    	throws AuthenticationException, IOException, TooManyRequestsException, ParseException, PinboardException{
+    	throws AuthenticationException, IOException, TooManyRequestsException, ParseException, PinboardException, 
+    	RemoteException, OperationApplicationException{
     	
     	long lastUpdate = getServerSyncMarker(account);
     	final String username = account.name;
@@ -127,104 +166,324 @@ public class BookmarkSyncAdapter extends AbstractThreadedSyncAdapter {
     	if(update.getLastUpdate() > lastUpdate) {
 	
 			Log.d(TAG, "In Bookmark Load");
-			final ArrayList<String> accounts = new ArrayList<String>();
-			accounts.add(account.name);
+			
+			// only bookmarks added since the last sync are downloaded, unless this is the first
+			// sync or a periodic full reconciliation is due to pick up edits and deletions
+			final boolean full = lastUpdate == 0 || isReconcileDue(account);
+			
+			final SyncCheckpoint checkpoint = SyncCheckpoint.load(mAccountManager, account, update.getLastUpdate(), full);
+			if(checkpoint.isResumed())
+				Log.d(TAG, "Resuming sync from " + checkpoint);
 	
-			final ArrayList<Bookmark> addBookmarkList = getBookmarkList();	
-			BookmarkManager.TruncateBookmarks(accounts, mContext, false);		
-			if(!addBookmarkList.isEmpty()){
-				List<Bookmark> unsyncedBookmarks = BookmarkManager.GetLocalBookmarks(username, mContext);
-				addBookmarkList.removeAll(unsyncedBookmarks);
+			if(checkpoint.getPhase() <= SyncCheckpoint.PHASE_BOOKMARKS) {
+				mTelemetry.phase("bookmarks");
+				final int received = ingestBookmarks(checkpoint, full ? 0 : lastUpdate, syncResult);
+				int deleted = 0;
+				
+				mTelemetry.phase("sweep");
+				// an incremental download does not list every bookmark, so unseen rows are not stale
+				if(full)
+					deleted = BookmarkManager.DeleteUnseen(username, checkpoint.getPass(), mContext);
 				
-				BookmarkManager.BulkInsert(addBookmarkList, username, mContext);
+				Log.d(TAG, (full ? "Full" : "Incremental") + " bookmarks received: " + received + ", deleted: " + deleted);
+				syncResult.stats.numDeletes += deleted;
+				syncResult.stats.numEntries += received;
+				
+				checkpoint.savePhase(SyncCheckpoint.PHASE_TAGS);
 			}
 			
-			final ArrayList<Tag> tagList = PinboardApi.getTags(account, mContext);
-			TagManager.TruncateTags(username, mContext);
-			if(!tagList.isEmpty()){
-				TagManager.BulkInsert(tagList, username, mContext);
+			if(checkpoint.getPhase() <= SyncCheckpoint.PHASE_TAGS) {
+				mTelemetry.phase("tags");
+				final ArrayList<Tag> tagList = PinboardApi.getTags(account, mContext);
+				TagManager.TruncateTags(username, mContext);
+				if(!tagList.isEmpty()){
+					TagManager.BulkInsert(tagList, username, mContext);
+				}
+				
+				checkpoint.savePhase(SyncCheckpoint.PHASE_NOTES);
 			}
 			
-			SyncNotes();
+			mTelemetry.phase("notes");
+			SyncNotes(syncResult);
         
             setServerSyncMarker(account, update.getLastUpdate());
-
-            syncResult.stats.numEntries += addBookmarkList.size();
+            if(full)
+            	mAccountManager.setUserData(account, Constants.SYNC_RECONCILE_KEY, Long.toString(System.currentTimeMillis()));
+            SyncCheckpoint.clear(mAccountManager, account);
     	} else {
     		Log.d(TAG, "No update needed.  Last update time before last sync.");
     	}
     }
     
-    private void SyncNotes() throws AuthenticationException, IOException, TooManyRequestsException, PinboardException{
+    /**
+     * Syncs the users notes.  Only notes that are new or whose hash has changed are
+     * downloaded, notes removed on the server are deleted and the rest are left alone.
+     * Downloaded notes are committed in batches, so an interrupted sync does not fetch
+     * them again.
+     */
+    private void SyncNotes(SyncResult syncResult) 
+    	throws AuthenticationException, IOException, TooManyRequestsException, PinboardException, 
+    	RemoteException, OperationApplicationException{
     	
 		final ArrayList<Note> noteList = PinboardApi.getNoteList(mAccount, mContext);
-		NoteManager.TruncateNotes(mAccount.name, mContext);
+		final HashMap<String, Note> localNotes = NoteManager.GetSyncStates(mAccount.name, mContext);
+		final ArrayList<Note> changedNotes = new ArrayList<Note>();
 		
 		for(Note n : noteList){
-			//NoteManager.UpsertNote(n, mAccount.name, mContext);
+			final Note l = localNotes.remove(n.getPid());
 			
-			Note t = PinboardApi.getNote(n.getPid(), mAccount, mContext);
-			n.setText(t.getText());
+			if(l == null || l.getHash() == null || !l.getHash().equals(n.getHash())) {
+				n.setId(l == null ? 0 : l.getId());
+				changedNotes.add(n);
+			}
 		}
 		
-		if(!noteList.isEmpty()){
-			NoteManager.BulkInsert(noteList, mAccount.name, mContext);
+		final ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+		final Uri notesUri = BookmarkContentProvider.accountUri(Note.CONTENT_URI, mAccount.name);
+		
+		for(int i = 0; i < changedNotes.size(); i += NOTE_BATCH_SIZE) {
+			final ArrayList<Note> batch = new ArrayList<Note>(changedNotes.subList(i, Math.min(i + NOTE_BATCH_SIZE, changedNotes.size())));
+			
+			fetchNoteText(batch);
+			
+			for(Note n : batch) {
+				if(n.getId() == 0) {
+					operations.add(ContentProviderOperation.newInsert(notesUri)
+						.withValues(NoteManager.ToContentValues(n, mAccount.name))
+						.build());
+					syncResult.stats.numInserts++;
+				} else {
+					operations.add(ContentProviderOperation.newUpdate(notesUri)
+						.withSelection(Note._ID + "=?", new String[]{Integer.toString(n.getId())})
+						.withValues(NoteManager.ToContentValues(n, mAccount.name))
+						.build());
+					syncResult.stats.numUpdates++;
+				}
+			}
+			
+			NoteManager.ApplyBatch(operations, mContext);
+			operations.clear();
 		}
+		
+		for(Note l : localNotes.values()) {
+			operations.add(ContentProviderOperation.newDelete(notesUri)
+				.withSelection(Note._ID + "=?", new String[]{Integer.toString(l.getId())})
+				.build());
+			syncResult.stats.numDeletes++;
+		}
+		
+		NoteManager.ApplyBatch(operations, mContext);
+		
+		Log.d(TAG, "Notes received: " + noteList.size() + ", downloaded: " + changedNotes.size() + 
+			", deleted: " + localNotes.size());
     }
     
+    /**
+     * Downloads the text of a list of notes through a small pool of workers.  The calls
+     * are paced by the account's request scheduler.
+     */
+    private void fetchNoteText(ArrayList<Note> notes) 
+    	throws AuthenticationException, IOException, TooManyRequestsException, PinboardException {
+    	
+    	if(notes.isEmpty())
+    		return;
+    	
+    	final ExecutorService executor = Executors.newFixedThreadPool(Math.min(NOTE_FETCH_THREADS, notes.size()));
+    	final ArrayList<Future<Note>> results = new ArrayList<Future<Note>>(notes.size());
+    	
+    	try {
+    		for(final Note n : notes) {
+    			results.add(executor.submit(new Callable<Note>() {
+					public Note call() throws Exception {
+						return PinboardApi.getNote(n.getPid(), mAccount, mContext);
+					}
+				}));
+    		}
+    		
+    		for(int i = 0; i < notes.size(); i++) {
+    			notes.get(i).setText(results.get(i).get().getText());
+    		}
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    		throw new IOException("Sync interrupted");
+		} catch (ExecutionException e) {
+			BookmarkSyncPipeline.rethrow(e.getCause());
+		} finally {
+    		executor.shutdownNow();
+    	}
+    }
+    
+    /**
+     * Uploads the bookmarks queued in the outbox.  Repeated edits to a bookmark have already
+     * been collapsed into a single outbox entry, and the results are written back to the
+     * provider in batches rather than one update per bookmark.
+     */
     private void UploadBookmarks(Account account, SyncResult syncResult) 
-		throws AuthenticationException, IOException, TooManyRequestsException, ParseException{
+		throws AuthenticationException, IOException, TooManyRequestsException, ParseException, 
+		RemoteException, OperationApplicationException{
     
-    	final ArrayList<Bookmark> bookmarks = BookmarkManager.GetLocalBookmarks(account.name, mContext);
+    	final ArrayList<Outbox> pending = OutboxManager.GetPending(account.name, Outbox.OPERATION_UPSERT, mContext);
+    	final ArrayList<String> uploaded = new ArrayList<String>();
+    	final ArrayList<String> failed = new ArrayList<String>();
+    	final ArrayList<String> sent = new ArrayList<String>();
     	
-    	for(Bookmark b : bookmarks)
+    	for(Outbox o : pending)
     	{
+    		final Bookmark b;
+    		
+    		try {
+    			b = BookmarkManager.GetByHash(o.getHash(), account.name, mContext);
+    		} catch (ContentNotFoundException e) {
+    			// the bookmark no longer exists locally, so there is nothing to upload
+    			sent.add(Integer.toString(o.getId()));
+    			continue;
+    		}
+    		
     		try{
 				PinboardApi.addBookmark(b, account, mContext);
 	
 				Log.d(TAG, "Bookmark edited: " + (b.getHash() == null ? "" : b.getHash()));
-				b.setSynced(1);
-				BookmarkManager.SetSynced(b, 1, account.name, mContext);
+				uploaded.add(Integer.toString(b.getId()));
+				sent.add(Integer.toString(o.getId()));
 				
 				syncResult.stats.numEntries++;
     		}
     		catch(PinboardException e){
     			Log.d(TAG, "Error editing bookmark: " + (b.getHash() == null ? "" : b.getHash()));
-				b.setSynced(-1);
-				BookmarkManager.SetSynced(b, -1, account.name, mContext);
+    			failed.add(Integer.toString(b.getId()));
+    		}
+    		
+    		if(uploaded.size() + failed.size() >= UPLOAD_BATCH_SIZE) {
+    			commitUploads(uploaded, failed, sent);
     		}
-    	}	
+    	}
+    	
+    	commitUploads(uploaded, failed, sent);
+    }
+    
+    /**
+     * Marks uploaded and failed bookmarks and removes sent outbox entries in a single
+     * transaction, then clears the lists.
+     */
+    private void commitUploads(ArrayList<String> uploaded, ArrayList<String> failed, ArrayList<String> sent) 
+    	throws RemoteException, OperationApplicationException {
+    	
+    	final ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+    	
+    	if(!uploaded.isEmpty())
+    		operations.add(BookmarkManager.SetSyncedOperation(uploaded, 1, mAccount.name));
+    	if(!failed.isEmpty())
+    		operations.add(BookmarkManager.SetSyncedOperation(failed, -1, mAccount.name));
+    	if(!sent.isEmpty())
+    		operations.add(OutboxManager.DeleteOperation(sent));
+    	
+    	BookmarkManager.ApplyBatch(operations, mContext);
+    	
+    	uploaded.clear();
+    	failed.clear();
+    	sent.clear();
     }
     
     private void DeleteBookmarks(Account account, SyncResult syncResult) 
-		throws AuthenticationException, IOException, TooManyRequestsException, ParseException, PinboardException{
+		throws AuthenticationException, IOException, TooManyRequestsException, ParseException, PinboardException, 
+		RemoteException, OperationApplicationException{
 	
+    	final ArrayList<Outbox> pending = OutboxManager.GetPending(account.name, Outbox.OPERATION_DELETE, mContext);
 		final ArrayList<Bookmark> bookmarks = BookmarkManager.GetDeletedBookmarks(account.name, mContext);
+		final ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+		final ArrayList<String> purged = new ArrayList<String>();
 		
+		// Remote deletes are paced by the request scheduler.  Tombstones are purged locally a
+		// batch at a time, so an interrupted sync only repeats the deletes of its last batch,
+		// which the server answers with "item not found".
 		for(Bookmark b : bookmarks)
 		{
 			PinboardApi.deleteBookmark(b, account, mContext);
 	
 			Log.d(TAG, "Bookmark deleted: " + (b.getHash() == null ? "" : b.getHash()));
-			BookmarkManager.DeleteBookmark(b, mContext);
+			purged.add(Integer.toString(b.getId()));
+			
+			if(purged.size() == UPLOAD_BATCH_SIZE) {
+				operations.add(BookmarkManager.DeleteOperation(purged, account.name));
+				BookmarkManager.ApplyBatch(operations, mContext);
+				operations.clear();
+				purged.clear();
+			}
+		}
+		if(!purged.isEmpty())
+			operations.add(BookmarkManager.DeleteOperation(purged, account.name));
+		
+		final ArrayList<String> sent = new ArrayList<String>();
+		
+		for(Outbox o : pending) {
+			sent.add(Integer.toString(o.getId()));
+			
+			if(sent.size() == UPLOAD_BATCH_SIZE) {
+				operations.add(OutboxManager.DeleteOperation(sent));
+				sent.clear();
+			}
 		}
+		if(!sent.isEmpty())
+			operations.add(OutboxManager.DeleteOperation(sent));
+		
+		BookmarkManager.ApplyBatch(operations, mContext);
 		
 		syncResult.stats.numEntries += bookmarks.size();
 	}
     
-    private ArrayList<Bookmark> getBookmarkList()
-    	throws AuthenticationException, IOException, TooManyRequestsException, PinboardException {
-    	int pageSize = Constants.BOOKMARK_PAGE_SIZE;
-    	ArrayList<Bookmark> results = new ArrayList<Bookmark>();   	
-
-		int page = 0;
-		boolean morePages = true;
+    /**
+     * Downloads the bookmarks of the account one page at a time, committing each page to the
+     * provider as it arrives, so that memory use does not grow with the size of the account.
+     * Pages are fetched and parsed ahead of the writer by a {@link BookmarkSyncPipeline}.
+     * 
+     * The checkpoint is advanced after each committed page, and the download starts from
+     * its offset.
+     * 
+     * @param checkpoint The checkpoint of this sync.  On a full download, the hashes received are
+     * recorded as seen during its pass.
+     * @param fromTime If not 0, only bookmarks saved since this time are downloaded.
+     * @param syncResult The sync result insert and update counts are reported to.
+     * @return The number of bookmarks received from the server.
+     */
+    private int ingestBookmarks(final SyncCheckpoint checkpoint, long fromTime, final SyncResult syncResult)
+    	throws AuthenticationException, IOException, TooManyRequestsException, PinboardException, 
+    	RemoteException, OperationApplicationException {
+    	
+    	final BookmarkSyncPipeline pipeline = new BookmarkSyncPipeline(mAccount, mContext, 
+    		Constants.BOOKMARK_PAGE_SIZE, checkpoint.getOffset(), fromTime);
+    	
+    	try {
+	    	return pipeline.run(new BookmarkSyncPipeline.PageWriter() {
+				public void write(ArrayList<Bookmark> bookmarks) throws RemoteException, OperationApplicationException {
+					ingestPage(bookmarks, checkpoint, syncResult);
+					checkpoint.saveOffset(checkpoint.getOffset() + bookmarks.size());
+				}
+			});
+    	} finally {
+    		mTelemetry.addPipelineStats(pipeline.getStats());
+    	}
+    }
+    
+    private void ingestPage(ArrayList<Bookmark> bookmarks, SyncCheckpoint checkpoint, SyncResult syncResult) 
+    	throws RemoteException, OperationApplicationException {
+    	
+    	if(bookmarks.isEmpty())
+    		return;
+    	
+		final ArrayList<String> hashes = new ArrayList<String>(bookmarks.size());
+		for(Bookmark b : bookmarks) {
+			hashes.add(b.getHash());
+		}
 		
-		do{
-			morePages = results.addAll(PinboardApi.getAllBookmarks(null, page++ * pageSize, pageSize, mAccount, mContext));
-		} while(morePages);
-
-		return results;
+		final HashMap<String, Bookmark> local = BookmarkManager.GetSyncStates(mAccount.name, hashes, mContext);
+		final BookmarkDiff diff = BookmarkDiff.compute(bookmarks, local, mAccount.name);
+		
+		// the whole page lands in one transaction, or not at all
+		BookmarkManager.Ingest(diff.getInsertedBookmarks(), diff.getOperations(), 
+			checkpoint.isFull() ? hashes : null, mAccount.name, checkpoint.getPass(), mContext);
+		
+		syncResult.stats.numInserts += diff.getInserts();
+		syncResult.stats.numUpdates += diff.getUpdates();
     }
     
     private void checkSecretToken(Account account) throws AuthenticationException, IOException, TooManyRequestsException, ParseException, PinboardException{
@@ -251,6 +510,19 @@ public class BookmarkSyncAdapter extends AbstractThreadedSyncAdapter {
         return 0;
     }
 
+    /**
+     * Whether the last full download is old enough that the next sync should list every
+     * bookmark again, rather than only those added since the last sync.
+     * @param account The account we're syncing
+     */
+    private boolean isReconcileDue(Account account) {
+        String reconcileString = mAccountManager.getUserData(account, Constants.SYNC_RECONCILE_KEY);
+        if (!TextUtils.isEmpty(reconcileString)) {
+            return System.currentTimeMillis() - Long.parseLong(reconcileString) > Constants.SYNC_RECONCILE_INTERVAL;
+        }
+        return true;
+    }
+
     /**
      * Save off the high-water-mark we receive back from the server.
      * @param account The account we're syncing
@@ -0,0 +1,371 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.syncadapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import android.accounts.Account;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.pindroid.client.AuthenticationException;
+import com.pindroid.client.PinboardApi;
+import com.pindroid.client.PinboardException;
+import com.pindroid.client.RetryPolicy;
+import com.pindroid.client.TooManyRequestsException;
+import com.pindroid.json.JsonBookmarkParser;
+import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.util.SettingsHelper;
+import com.pindroid.xml.BookmarkStream;
+
+/**
+ * Downloads the bookmarks of an account as a three stage pipeline.  Pages are fetched and
+ * parsed on worker threads and handed off through bounded queues to the calling thread,
+ * which writes them to the provider, so that page N+1 is downloading while page N is
+ * being written.  The next page is only requested once the previous one has been parsed
+ * and found to be full, so no request is made past the last page.
+ */
+public class BookmarkSyncPipeline {
+	
+	private static final String TAG = "BookmarkSyncPipeline";
+	
+	private static final int QUEUE_CAPACITY = 2;
+	
+	/**
+	 * Receives each parsed page on the calling thread, in order.
+	 */
+	public interface PageWriter {
+		void write(ArrayList<Bookmark> bookmarks) throws RemoteException, OperationApplicationException;
+	}
+	
+	private static class Page {
+		final byte[] body;
+		final ArrayList<Bookmark> bookmarks;
+		final boolean last;
+		final Throwable error;
+		
+		Page(byte[] body, ArrayList<Bookmark> bookmarks, boolean last, Throwable error) {
+			this.body = body;
+			this.bookmarks = bookmarks;
+			this.last = last;
+			this.error = error;
+		}
+	}
+	
+	/**
+	 * Time spent working in each stage, and the average depth of the hand-off queues.
+	 */
+	public static class Stats {
+		volatile long wallNanos;
+		volatile long fetchNanos;
+		volatile long parseNanos;
+		volatile long writeNanos;
+		volatile long fetchQueueDepth;
+		volatile long parseQueueDepth;
+		volatile int pages;
+		volatile long bytes;
+		
+		private static int percent(long part, long whole) {
+			return whole == 0 ? 0 : (int)(part * 100 / whole);
+		}
+		
+		public long getFetchMillis() {
+			return fetchNanos / 1000000;
+		}
+		
+		public long getParseMillis() {
+			return parseNanos / 1000000;
+		}
+		
+		public long getWriteMillis() {
+			return writeNanos / 1000000;
+		}
+		
+		public long getBytes() {
+			return bytes;
+		}
+		
+		@Override
+		public String toString() {
+			return pages + " pages, " + bytes + " bytes in " + (wallNanos / 1000000) + "ms; busy fetch " + 
+				percent(fetchNanos, wallNanos) + "%, parse " + percent(parseNanos, wallNanos) + "%, write " + 
+				percent(writeNanos, wallNanos) + "%; avg queue fetch->parse " + 
+				(pages == 0 ? 0 : (float)fetchQueueDepth / pages) + ", parse->write " + 
+				(pages == 0 ? 0 : (float)parseQueueDepth / pages);
+		}
+	}
+	
+	private final Account mAccount;
+	private final Context mContext;
+	private final int mPageSize;
+	private final int mStart;
+	private final long mFromTime;
+	private final boolean mJson;
+	
+	private final BlockingQueue<Page> mFetched = new ArrayBlockingQueue<Page>(QUEUE_CAPACITY);
+	private final BlockingQueue<Page> mParsed = new ArrayBlockingQueue<Page>(QUEUE_CAPACITY);
+	// released by the parser for each full page, allowing the fetcher to request the next one
+	private final Semaphore mNextPage = new Semaphore(0);
+	private final Stats mStats = new Stats();
+	private volatile boolean mFinished = false;
+	
+	public BookmarkSyncPipeline(Account account, Context context, int pageSize) {
+		this(account, context, pageSize, 0, 0);
+	}
+	
+	/**
+	 * @param start The offset of the first bookmark to download, used to resume an
+	 * interrupted sync.
+	 * @param fromTime If not 0, only bookmarks saved at or after this time are downloaded.
+	 */
+	public BookmarkSyncPipeline(Account account, Context context, int pageSize, int start, long fromTime) {
+		mAccount = account;
+		mContext = context;
+		mPageSize = pageSize;
+		mStart = start;
+		mFromTime = fromTime;
+		// read once, so every page of a sync is fetched and parsed in the same format
+		mJson = SettingsHelper.getUseJsonApi(context);
+	}
+	
+	public Stats getStats() {
+		return mStats;
+	}
+	
+	/**
+	 * Runs the pipeline to completion, passing each page to the writer on the calling thread.
+	 * 
+	 * @param writer The writer that commits each page.
+	 * @return The number of bookmarks received from the server.
+	 */
+	public int run(PageWriter writer) 
+		throws AuthenticationException, IOException, TooManyRequestsException, PinboardException, 
+		RemoteException, OperationApplicationException {
+		
+		final Thread fetcher = new Thread(new Runnable() {
+			public void run() {
+				fetch();
+			}
+		}, TAG + "-fetch");
+		final Thread parser = new Thread(new Runnable() {
+			public void run() {
+				parse();
+			}
+		}, TAG + "-parse");
+		
+		final long start = System.nanoTime();
+		int received = 0;
+		
+		fetcher.start();
+		parser.start();
+		
+		try {
+			while(true) {
+				mStats.parseQueueDepth += mParsed.size();
+				final Page page = mParsed.take();
+				
+				if(page.error != null) {
+					rethrow(page.error);
+				}
+				
+				final long writeStart = System.nanoTime();
+				if(!page.bookmarks.isEmpty()) {
+					writer.write(page.bookmarks);
+				}
+				mStats.writeNanos += System.nanoTime() - writeStart;
+				
+				received += page.bookmarks.size();
+				
+				if(page.last) {
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Sync interrupted");
+		} finally {
+			mFinished = true;
+			fetcher.interrupt();
+			parser.interrupt();
+			mStats.wallNanos = System.nanoTime() - start;
+			Log.d(TAG, mStats.toString());
+		}
+		
+		return received;
+	}
+	
+	private void fetch() {
+		final RetryPolicy retryPolicy = RetryPolicy.get(mAccount.name);
+		int page = 0;
+		
+		try {
+			while(!mFinished) {
+				if(page > 0) {
+					mNextPage.acquire();
+				}
+				
+				final long fetchStart = System.nanoTime();
+				final int offset = mStart + page++ * mPageSize;
+				final RetryPolicy.Budget retryBudget = retryPolicy.getBudget();
+				Page result = null;
+				
+				for(int failures = 0; result == null; failures++) {
+					try {
+						result = new Page(fetchPage(offset), null, false, null);
+					} catch (IOException e) {
+						// the api call retries failed requests itself, this covers a
+						// connection dropped while the page was being read
+						final long delay = retryBudget.getDelay(failures);
+						
+						if(delay < 0 || Thread.currentThread().isInterrupted()) {
+							result = new Page(null, null, true, e);
+						} else {
+							Log.d(TAG, "Refetching page at " + offset + " in " + delay + "ms after " + e);
+							retryBudget.sleep(delay);
+						}
+					} catch (Throwable e) {
+						// anything else, including running out of memory buffering the page,
+						// still has to reach the writer, or it would wait for the page forever
+						result = new Page(null, null, true, e);
+					}
+				}
+				
+				mStats.fetchNanos += System.nanoTime() - fetchStart;
+				mFetched.put(result);
+				
+				if(result.error != null) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			// pipeline finished or was abandoned
+		} catch (InterruptedIOException e) {
+			// abandoned while waiting to refetch a page
+		}
+	}
+	
+	private byte[] fetchPage(int offset) 
+		throws IOException, AuthenticationException, TooManyRequestsException, PinboardException {
+		
+		final InputStream in = mFromTime != 0
+			? PinboardApi.getChangedBookmarksStream(mFromTime, offset, mPageSize, mJson, mAccount, mContext)
+			: PinboardApi.getAllBookmarksStream(null, offset, mPageSize, mJson, mAccount, mContext);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		int read;
+		
+		try {
+			while((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		
+		return out.toByteArray();
+	}
+	
+	private void parse() {
+		try {
+			while(!mFinished) {
+				mStats.fetchQueueDepth += mFetched.size();
+				final Page fetched = mFetched.take();
+				
+				if(fetched.error != null) {
+					mParsed.put(fetched);
+					return;
+				}
+				
+				final long parseStart = System.nanoTime();
+				Page result;
+				
+				try {
+					final InputStream body = new ByteArrayInputStream(fetched.body);
+					final ArrayList<Bookmark> bookmarks = mJson ? new JsonBookmarkParser(body).parse() 
+						: BookmarkStream.forPosts(body).readAll();
+					final boolean last = bookmarks.size() < mPageSize;
+					
+					mStats.pages++;
+					mStats.bytes += fetched.body.length;
+					result = new Page(null, bookmarks, last, null);
+				} catch (ParseException e) {
+					Log.e(TAG, "Server error in fetching bookmark list");
+					result = new Page(null, null, true, new IOException(e.getMessage()));
+				} catch (Throwable e) {
+					result = new Page(null, null, true, e);
+				}
+				
+				mStats.parseNanos += System.nanoTime() - parseStart;
+				
+				if(result.last) {
+					// stop the fetcher, which is waiting for this page before requesting the next
+					mFinished = true;
+				} else {
+					mNextPage.release();
+				}
+				
+				mParsed.put(result);
+				
+				if(result.last) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			// pipeline finished or was abandoned
+		}
+	}
+	
+	/**
+	 * Rethrows a failure caught on a worker thread as one of the exceptions thrown by the api.
+	 */
+	static void rethrow(Throwable e) 
+		throws AuthenticationException, IOException, TooManyRequestsException, PinboardException {
+		
+		if(e instanceof AuthenticationException) {
+			throw (AuthenticationException)e;
+		} else if(e instanceof IOException) {
+			throw (IOException)e;
+		} else if(e instanceof TooManyRequestsException) {
+			throw (TooManyRequestsException)e;
+		} else if(e instanceof PinboardException) {
+			throw (PinboardException)e;
+		} else if(e instanceof RuntimeException) {
+			throw (RuntimeException)e;
+		} else if(e instanceof Error) {
+			throw (Error)e;
+		} else {
+			throw new IOException(e.getMessage());
+		}
+	}
+}
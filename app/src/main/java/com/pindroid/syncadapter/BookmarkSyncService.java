@@ -21,10 +21,15 @@
 
 package com.pindroid.syncadapter;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
 import android.app.Service;
 import android.content.Intent;
 import android.os.IBinder;
 
+import com.pindroid.client.NetworkStats;
+
 /**
  * Service to handle Account sync. This is invoked with an intent with action
  * ACTION_AUTHENTICATOR_INTENT. It instantiates the syncadapter and returns its
@@ -53,4 +58,13 @@ public class BookmarkSyncService extends Service {
     public IBinder onBind(Intent intent) {
         return sSyncAdapter.getSyncAdapterBinder();
     }
+
+    /**
+     * Prints the network statistics, for
+     * adb shell dumpsys activity service com.pindroid/.syncadapter.BookmarkSyncService
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.print(NetworkStats.dump());
+    }
 }
\ No newline at end of file
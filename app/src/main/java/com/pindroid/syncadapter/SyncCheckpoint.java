@@ -0,0 +1,139 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.syncadapter;
+
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.text.TextUtils;
+
+import com.pindroid.Constants;
+
+/**
+ * Records how far a download sync got, so that a sync interrupted by doze, a dropped
+ * connection or a process kill resumes where it stopped instead of starting over.
+ * 
+ * The checkpoint is kept in the account's user data and is tied to the server update time
+ * the sync started from and to whether it is a full or incremental download.  Bookmark page
+ * offsets are only stable while the server's data and the request are unchanged, so any
+ * other checkpoint is discarded.
+ */
+public class SyncCheckpoint {
+	
+	public static final int PHASE_BOOKMARKS = 0;
+	public static final int PHASE_TAGS = 1;
+	public static final int PHASE_NOTES = 2;
+	
+	private final AccountManager mAccountManager;
+	private final Account mAccount;
+	private final long mPass;
+	private final boolean mFull;
+	private int mPhase = PHASE_BOOKMARKS;
+	private int mOffset = 0;
+	
+	private SyncCheckpoint(AccountManager accountManager, Account account, long pass, boolean full) {
+		mAccountManager = accountManager;
+		mAccount = account;
+		mPass = pass;
+		mFull = full;
+	}
+	
+	/**
+	 * Loads the checkpoint for a sync of the given server update time.
+	 * 
+	 * @param full Whether the sync downloads every bookmark or only those added since the last sync.
+	 * @return The stored checkpoint if it belongs to the same update time and kind of sync,
+	 * otherwise a checkpoint at the start of the first phase.
+	 */
+	public static SyncCheckpoint load(AccountManager accountManager, Account account, long pass, boolean full) {
+		final SyncCheckpoint checkpoint = new SyncCheckpoint(accountManager, account, pass, full);
+		final String value = accountManager.getUserData(account, Constants.SYNC_CHECKPOINT_KEY);
+		
+		if(!TextUtils.isEmpty(value)) {
+			final String[] parts = value.split(",");
+			
+			try {
+				if(parts.length == 4 && Long.parseLong(parts[0]) == pass && parts[3].equals(full ? "1" : "0")) {
+					checkpoint.mPhase = Integer.parseInt(parts[1]);
+					checkpoint.mOffset = Integer.parseInt(parts[2]);
+				}
+			} catch(NumberFormatException e) {
+				// unreadable checkpoint, start over
+			}
+		}
+		
+		return checkpoint;
+	}
+	
+	/**
+	 * Removes any stored checkpoint for the account.
+	 */
+	public static void clear(AccountManager accountManager, Account account) {
+		accountManager.setUserData(account, Constants.SYNC_CHECKPOINT_KEY, null);
+	}
+	
+	public long getPass() {
+		return mPass;
+	}
+	
+	public boolean isFull() {
+		return mFull;
+	}
+	
+	public int getPhase() {
+		return mPhase;
+	}
+	
+	public int getOffset() {
+		return mOffset;
+	}
+	
+	public boolean isResumed() {
+		return mPhase != PHASE_BOOKMARKS || mOffset != 0;
+	}
+	
+	/**
+	 * Records that the bookmarks before the given offset have been committed.
+	 */
+	public void saveOffset(int offset) {
+		mOffset = offset;
+		save();
+	}
+	
+	/**
+	 * Records that every phase before the given one has completed.
+	 */
+	public void savePhase(int phase) {
+		mPhase = phase;
+		mOffset = 0;
+		save();
+	}
+	
+	private void save() {
+		mAccountManager.setUserData(mAccount, Constants.SYNC_CHECKPOINT_KEY, mPass + "," + mPhase + "," + mOffset + "," + (mFull ? "1" : "0"));
+	}
+	
+	@Override
+	public String toString() {
+		return (mFull ? "full" : "incremental") + " pass " + mPass + ", phase " + mPhase + ", offset " + mOffset;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.syncadapter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.Context;
+import android.content.SyncResult;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.pindroid.client.HttpClientFactory;
+import com.pindroid.client.NetworkStats;
+import com.pindroid.platform.SyncHistoryManager;
+import com.pindroid.providers.SyncHistoryContent.SyncHistory;
+
+/**
+ * Measures a single sync run: the time spent in each phase, the api traffic it caused and
+ * the rows it changed.  The measurements are logged and added to the sync history when the
+ * run finishes.
+ */
+public class SyncTelemetry {
+	
+	private static final String TAG = "SyncTelemetry";
+	
+	private final String mAccount;
+	private final NetworkStats mTraffic;
+	private final long mStarted = System.currentTimeMillis();
+	private final long mStart = SystemClock.elapsedRealtime();
+	
+	private final long mRequests;
+	private final long mRetries;
+	private final long mCompressedBytes;
+	private final long mBytes;
+	private final long mConnectionsOpened = HttpClientFactory.getConnectionsOpened();
+	private final long mConnectionsReused = HttpClientFactory.getConnectionsReused();
+	
+	private final LinkedHashMap<String, Long> mPhases = new LinkedHashMap<String, Long>();
+	private String mPhase = null;
+	private long mPhaseStart = 0;
+	
+	public SyncTelemetry(String account) {
+		mAccount = account;
+		mTraffic = NetworkStats.getAccountTotals(account);
+		mRequests = mTraffic.getRequests();
+		mRetries = mTraffic.getRetries();
+		mCompressedBytes = mTraffic.getCompressedBytes();
+		mBytes = mTraffic.getBytes();
+	}
+	
+	/**
+	 * Ends the current phase, if any, and starts timing the given one.
+	 */
+	public void phase(String name) {
+		endPhase();
+		mPhase = name;
+		mPhaseStart = SystemClock.elapsedRealtime();
+	}
+	
+	/**
+	 * Records the busy time of each stage of a bookmark download.
+	 */
+	public void addPipelineStats(BookmarkSyncPipeline.Stats stats) {
+		add("fetch", stats.getFetchMillis());
+		add("parse", stats.getParseMillis());
+		add("write", stats.getWriteMillis());
+	}
+	
+	/**
+	 * Ends the run and records it in the sync history.
+	 */
+	public void finish(SyncResult syncResult, Context context) {
+		endPhase();
+		
+		final StringBuilder phases = new StringBuilder();
+		for(Map.Entry<String, Long> e : mPhases.entrySet()) {
+			if(phases.length() > 0)
+				phases.append(',');
+			phases.append(e.getKey()).append('=').append(e.getValue());
+		}
+		
+		final SyncHistory entry = new SyncHistory(mAccount, mStarted, SystemClock.elapsedRealtime() - mStart, 
+			getResult(syncResult), phases.toString(), 
+			mTraffic.getRequests() - mRequests, mTraffic.getRetries() - mRetries, 
+			mTraffic.getCompressedBytes() - mCompressedBytes, mTraffic.getBytes() - mBytes, 
+			syncResult.stats.numInserts, syncResult.stats.numUpdates, syncResult.stats.numDeletes);
+		
+		Log.d(TAG, entry.toString());
+		Log.d(TAG, "connections opened=" + (HttpClientFactory.getConnectionsOpened() - mConnectionsOpened) + 
+			", reused=" + (HttpClientFactory.getConnectionsReused() - mConnectionsReused));
+		
+		try {
+			SyncHistoryManager.Add(entry, context);
+		} catch (RuntimeException e) {
+			// the history is diagnostic only and must never fail a sync
+			Log.e(TAG, "Could not record sync history", e);
+		}
+	}
+	
+	private void endPhase() {
+		if(mPhase != null) {
+			add(mPhase, SystemClock.elapsedRealtime() - mPhaseStart);
+			mPhase = null;
+		}
+	}
+	
+	private void add(String phase, long millis) {
+		final Long total = mPhases.get(phase);
+		mPhases.put(phase, total == null ? millis : total + millis);
+	}
+	
+	private static String getResult(SyncResult syncResult) {
+		if(syncResult.stats.numAuthExceptions > 0)
+			return "auth error";
+		else if(syncResult.stats.numIoExceptions > 0)
+			return "io error";
+		else if(syncResult.stats.numParseExceptions > 0)
+			return "parse error";
+		else if(syncResult.databaseError)
+			return "database error";
+		else if(syncResult.delayUntil > 0)
+			return "rate limited";
+		else if(syncResult.stats.numSkippedEntries > 0)
+			return "server error";
+		else return "ok";
+	}
+}
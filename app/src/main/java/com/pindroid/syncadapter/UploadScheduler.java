@@ -0,0 +1,136 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.syncadapter;
+
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.pindroid.Constants;
+import com.pindroid.platform.OutboxManager;
+import com.pindroid.providers.BookmarkContentProvider;
+import com.pindroid.providers.OutboxContent.Outbox;
+
+/**
+ * Watches the outbox and pushes local edits to the server shortly after they are made.
+ * 
+ * A burst of saves is gathered into one upload-only sync, requested once the outbox has
+ * been quiet for {@link #UPLOAD_DELAY}, so edits do not wait for the next periodic sync and
+ * do not pay for a download of the account.  A steady stream of edits is still pushed at
+ * least every {@link #MAX_UPLOAD_DELAY}.
+ */
+public class UploadScheduler {
+	
+	private static final String TAG = "UploadScheduler";
+	
+	public static final long UPLOAD_DELAY = 5 * 1000;
+	public static final long MAX_UPLOAD_DELAY = 30 * 1000;
+	
+	private static UploadScheduler sInstance;
+	
+	private final Context mContext;
+	private final Handler mHandler;
+	private long mPendingSince = 0;
+	
+	private final Runnable mFlush = new Runnable() {
+		public void run() {
+			mPendingSince = 0;
+			flush();
+		}
+	};
+	
+	private UploadScheduler(Context context) {
+		mContext = context;
+		
+		final HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+		thread.start();
+		mHandler = new Handler(thread.getLooper());
+	}
+	
+	/**
+	 * Starts watching the outbox.  Calling this more than once has no further effect.
+	 */
+	public static synchronized void start(Context context) {
+		if(sInstance == null) {
+			sInstance = new UploadScheduler(context.getApplicationContext());
+			sInstance.register();
+		}
+	}
+	
+	private void register() {
+		mContext.getContentResolver().registerContentObserver(Outbox.CONTENT_URI, true, new ContentObserver(mHandler) {
+			@Override
+			public void onChange(boolean selfChange) {
+				schedule();
+			}
+		});
+	}
+	
+	/**
+	 * Pushes the pending flush back to {@link #UPLOAD_DELAY} after now, unless the oldest
+	 * unflushed edit is already {@link #MAX_UPLOAD_DELAY} old.  Runs on the handler thread.
+	 */
+	private void schedule() {
+		final long now = SystemClock.uptimeMillis();
+		
+		if(mPendingSince == 0)
+			mPendingSince = now;
+		
+		final long at = Math.min(now + UPLOAD_DELAY, mPendingSince + MAX_UPLOAD_DELAY);
+		
+		mHandler.removeCallbacks(mFlush);
+		mHandler.postAtTime(mFlush, at);
+	}
+	
+	/**
+	 * Requests an upload-only sync for each account that has changes waiting in the outbox.
+	 * The sync adapter emptying the outbox notifies again, but finds nothing left to send.
+	 */
+	private void flush() {
+		if(!ContentResolver.getMasterSyncAutomatically())
+			return;
+		
+		final Account[] accounts = AccountManager.get(mContext).getAccountsByType(Constants.ACCOUNT_TYPE);
+		
+		for(Account a : accounts) {
+			if(!ContentResolver.getSyncAutomatically(a, BookmarkContentProvider.AUTHORITY))
+				continue;
+			
+			if(OutboxManager.CountPending(a.name, mContext) > 0) {
+				Log.d(TAG, "Requesting upload sync for " + a.name);
+				
+				final Bundle extras = new Bundle();
+				extras.putBoolean(ContentResolver.SYNC_EXTRAS_UPLOAD, true);
+				ContentResolver.requestSync(a, BookmarkContentProvider.AUTHORITY, extras);
+			}
+		}
+	}
+}
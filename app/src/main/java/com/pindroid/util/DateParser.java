@@ -19,51 +19,211 @@
  * USA
  */
 
+
 package com.pindroid.util;
 
-import android.annotation.SuppressLint;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.TimeZone;
 
-@SuppressLint("SimpleDateFormat")
+/**
+ * Parses ISO-8601 / RFC 3339 timestamps, such as 2005-11-28T05:26:09Z or
+ * 2013-01-31T21:30:36.250+01:00, straight into epoch milliseconds.  The fields are read from
+ * the characters and the date is converted arithmetically, so parsing allocates nothing and
+ * is safe to call from any number of threads at once.  Timestamps are formatted the same way.
+ */
 public class DateParser {
 	
-	public static final TimeZone tz = TimeZone.getTimeZone("GMT");
-	public static final Calendar c = Calendar.getInstance(tz);
+	private static final long MILLIS_PER_MINUTE = 60 * 1000;
 	
-	public static Date parse( String input ) throws java.text.ParseException {
-
-        //NOTE: SimpleDateFormat uses GMT[-+]hh:mm for the TZ which breaks
-        //things a bit.  Before we go on we have to repair this.
-        SimpleDateFormat df = new SimpleDateFormat( "yyyy-MM-dd'T'HH:mm:ssz" );
-        
-        //this is zero time so we need to add that TZ indicator for 
-        if ( input.endsWith( "Z" ) ) {
-            input = input.substring( 0, input.length() - 1) + "GMT-00:00";
-        } else {
-            int inset = 6;
-        
-            String s0 = input.substring( 0, input.length() - inset );
-            String s1 = input.substring( input.length() - inset, input.length() );
-
-            input = s0 + "GMT" + s1;
-        }
-        
-        return df.parse( input );
-        
-    }
-    
-    public static long parseTime( String input ) {
-    	c.clear();
-        c.set(IntUtils.parseUInt(input.substring(0, 4)), 
-        		IntUtils.parseUInt(input.substring(5, 7)) - 1, 
-        		IntUtils.parseUInt(input.substring(8, 10)), 
-        		IntUtils.parseUInt(input.substring(11, 13)), 
-        		IntUtils.parseUInt(input.substring(14, 16)), 
-        		IntUtils.parseUInt(input.substring(17, 19)));
-
-        return c.getTimeInMillis();  
-    }
-}
\ No newline at end of file
+	/**
+	 * Parses a timestamp that includes a zone designator, either Z or an offset.
+	 * 
+	 * @throws java.text.ParseException If the timestamp is malformed or has no zone designator.
+	 */
+	public static Date parse(String input) throws java.text.ParseException {
+		try {
+			return new Date(toMillis(input, true));
+		} catch (IllegalArgumentException e) {
+			throw new java.text.ParseException(e.getMessage(), 0);
+		}
+	}
+	
+	/**
+	 * Parses a timestamp into epoch milliseconds.  A timestamp without a zone designator is
+	 * taken to be in UTC, and a space may stand in for the T between date and time.
+	 * 
+	 * @throws IllegalArgumentException If the timestamp is malformed.
+	 */
+	public static long parseTime(CharSequence input) {
+		return toMillis(input, false);
+	}
+	
+	/**
+	 * Formats epoch milliseconds as a UTC timestamp to the second, such as 2005-11-28T05:26:09Z,
+	 * the form the Pinboard api accepts.
+	 */
+	public static String format(long time) {
+		final long seconds = floorDiv(time, 1000);
+		final long days = floorDiv(seconds, 24 * 60 * 60);
+		final int secondOfDay = (int)(seconds - days * 24 * 60 * 60);
+		
+		// the inverse of daysFromCivil
+		final long z = days + 719468;
+		final long era = floorDiv(z, 146097);
+		final int dayOfEra = (int)(z - era * 146097);
+		final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		final int mp = (5 * dayOfYear + 2) / 153;
+		final int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+		final int month = mp < 10 ? mp + 3 : mp - 9;
+		final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		
+		final StringBuilder sb = new StringBuilder(20);
+		pad(sb, year, 4).append('-');
+		pad(sb, month, 2).append('-');
+		pad(sb, day, 2).append('T');
+		pad(sb, secondOfDay / 3600, 2).append(':');
+		pad(sb, secondOfDay / 60 % 60, 2).append(':');
+		pad(sb, secondOfDay % 60, 2).append('Z');
+		return sb.toString();
+	}
+	
+	private static StringBuilder pad(StringBuilder sb, long value, int width) {
+		for(long limit = 10; width > 1; width--, limit *= 10) {
+			if(value < limit)
+				sb.append('0');
+		}
+		return sb.append(value);
+	}
+	
+	private static long floorDiv(long x, long y) {
+		final long q = x / y;
+		return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+	}
+	
+	private static long toMillis(CharSequence s, boolean zoneRequired) {
+		final int length = s.length();
+		
+		if(length < 19)
+			throw invalid(s);
+		
+		final int year = digits(s, 0, 4);
+		final int month = digits(s, 5, 2);
+		final int day = digits(s, 8, 2);
+		final int hour = digits(s, 11, 2);
+		final int minute = digits(s, 14, 2);
+		final int second = digits(s, 17, 2);
+		
+		final char separator = s.charAt(10);
+		
+		if(s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(13) != ':' || s.charAt(16) != ':' 
+			|| (separator != 'T' && separator != 't' && separator != ' '))
+			throw invalid(s);
+		
+		// a leap second is accepted and rolls over into the next minute
+		if(month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) 
+			|| hour > 23 || minute > 59 || second > 60)
+			throw invalid(s);
+		
+		int i = 19;
+		int millis = 0;
+		
+		if(i < length && (s.charAt(i) == '.' || s.charAt(i) == ',')) {
+			final int start = ++i;
+			int scale = 100;
+			
+			// digits past the millisecond are dropped
+			while(i < length && isDigit(s.charAt(i))) {
+				millis += (s.charAt(i++) - '0') * scale;
+				scale /= 10;
+			}
+			
+			if(i == start)
+				throw invalid(s);
+		}
+		
+		int offset = 0;
+		
+		if(i == length) {
+			if(zoneRequired)
+				throw invalid(s);
+		} else {
+			final char zone = s.charAt(i);
+			
+			if(zone == 'Z' || zone == 'z') {
+				i++;
+			} else if(zone == '+' || zone == '-') {
+				if(i + 3 > length)
+					throw invalid(s);
+				
+				offset = digits(s, i + 1, 2) * 60;
+				i += 3;
+				
+				// the minutes are optional, unless announced by a colon
+				final boolean colon = i < length && s.charAt(i) == ':';
+				if(colon)
+					i++;
+				
+				if(colon || i < length) {
+					if(i + 2 > length)
+						throw invalid(s);
+					
+					offset += digits(s, i, 2);
+					i += 2;
+				}
+				
+				if(zone == '-')
+					offset = -offset;
+			}
+			
+			if(i != length)
+				throw invalid(s);
+		}
+		
+		final long minutes = (daysFromCivil(year, month, day) * 24 + hour) * 60 + minute - offset;
+		
+		return minutes * MILLIS_PER_MINUTE + second * 1000L + millis;
+	}
+	
+	/**
+	 * Counts the days from 1970-01-01 to a date of the proleptic Gregorian calendar.
+	 */
+	private static long daysFromCivil(int year, int month, int day) {
+		// years start in March, so the leap day is the last day of the year
+		final int y = month <= 2 ? year - 1 : year;
+		final int era = (y >= 0 ? y : y - 399) / 400;
+		final int yearOfEra = y - era * 400;
+		final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		
+		return era * 146097L + dayOfEra - 719468;
+	}
+	
+	private static int daysInMonth(int year, int month) {
+		if(month == 2)
+			return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+		
+		return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+	}
+	
+	private static int digits(CharSequence s, int start, int count) {
+		int value = 0;
+		
+		for(int i = start; i < start + count; i++) {
+			final char c = s.charAt(i);
+			
+			if(!isDigit(c))
+				throw invalid(s);
+			
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	private static IllegalArgumentException invalid(CharSequence s) {
+		return new IllegalArgumentException("Invalid timestamp: " + s);
+	}
+}
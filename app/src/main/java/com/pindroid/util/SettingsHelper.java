@@ -68,6 +68,10 @@ public class SettingsHelper {
     	return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(context.getResources().getString(R.string.pref_usebrowser_key), false);
     }
 
+    public static boolean getUseJsonApi(Context context) {
+    	return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(context.getResources().getString(R.string.pref_jsonapi_key), false);
+    }
+
     public static Set<String> getDrawerTags(Context context) {
         Set<String> tags = new HashSet<String>();
         tags = PreferenceManager.getDefaultSharedPreferences(context).getStringSet(context.getResources().getString(R.string.pref_drawertags_key), tags);
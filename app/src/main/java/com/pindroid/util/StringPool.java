@@ -0,0 +1,75 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.util;
+
+import java.util.HashMap;
+
+/**
+ * Dedupes strings that repeat across the records of a response, such as tag strings and
+ * account names, so that equal values parsed from different records share one instance.
+ * Unlike {@link String#intern()} the pool is dropped together with the parser that owns it,
+ * so it holds on to nothing the parsed response does not.  It stops taking new strings once
+ * full, which keeps a response of unique values from growing it without bound.  Not thread
+ * safe.
+ */
+public class StringPool {
+	
+	public static final int DEFAULT_CAPACITY = 8192;
+	
+	private final HashMap<String, String> mStrings;
+	private final int mCapacity;
+	
+	public StringPool() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public StringPool(int capacity) {
+		mCapacity = capacity;
+		mStrings = new HashMap<String, String>();
+	}
+	
+	/**
+	 * @return The pooled instance equal to s, or s itself if it is the first of its value.
+	 */
+	public String intern(String s) {
+		if(s == null)
+			return null;
+		
+		if(s.length() == 0)
+			return "";
+		
+		final String pooled = mStrings.get(s);
+		
+		if(pooled != null)
+			return pooled;
+		
+		if(mStrings.size() < mCapacity)
+			mStrings.put(s, s);
+		
+		return s;
+	}
+	
+	public int size() {
+		return mStrings.size();
+	}
+}
@@ -32,6 +32,7 @@ import android.widget.Toast;
 import com.pindroid.Constants;
 import com.pindroid.R;
 import com.pindroid.providers.BookmarkContentProvider;
+import com.pindroid.syncadapter.SyncCheckpoint;
 
 public class SyncUtils {
 
@@ -58,6 +59,7 @@ public class SyncUtils {
 		Account[] accounts = AccountManager.get(context).getAccountsByType(Constants.ACCOUNT_TYPE);
 		for(Account a : accounts){
 			AccountManager.get(context).setUserData(a, Constants.SYNC_MARKER_KEY, "0");
+			SyncCheckpoint.clear(AccountManager.get(context), a);
 		}
     }
 
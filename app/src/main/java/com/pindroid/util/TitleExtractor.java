@@ -0,0 +1,283 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the title of a web page without downloading all of it.  The page is read until a
+ * complete title element or og:title meta tag has been seen, or until {@link #MAX_BYTES}
+ * have been read.
+ * 
+ * Markup is matched on the raw bytes, read as ISO-8859-1 so that every byte maps to one
+ * char, and only the title itself is decoded with the charset of the page.  Each read is
+ * only scanned for a closing title tag or og:title, and the page is matched once one has
+ * been closed by a '>'.
+ */
+public class TitleExtractor {
+	
+	public static final int MAX_BYTES = 64 * 1024;
+	
+	private static final String DEFAULT_CHARSET = "UTF-8";
+	
+	/**
+	 * Markup that can only be followed by a complete title once the next '>' has been read.
+	 */
+	private static final String[] TERMINATORS = { "</title", "og:title" };
+	
+	private static final Pattern TITLE = Pattern.compile("<title\\b[^>]*>(.*?)</title\\s*>", 
+		Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern META = Pattern.compile("<meta\\b([^>]*)>", Pattern.CASE_INSENSITIVE);
+	private static final Pattern ATTRIBUTE = Pattern.compile("([\\w:-]+)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s\"'>]+))");
+	private static final Pattern CHARSET = Pattern.compile("charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern ENTITY = Pattern.compile("&(#[0-9]+|#[xX][0-9a-fA-F]+|[a-zA-Z]+);");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	/**
+	 * Reads a page up to its title.  The stream is not closed.
+	 * 
+	 * @param in The body of the page.
+	 * @param charset The charset declared in the Content-Type header, or null.  Without one the
+	 * charset of a meta tag is used, and failing that UTF-8.
+	 * @return The title with entities decoded and whitespace collapsed, or an empty string if
+	 * none was found.
+	 */
+	public static String extract(InputStream in, String charset) throws IOException {
+		final byte[] buffer = new byte[MAX_BYTES];
+		int length = 0;
+		int read;
+		// the bytes before scanned have been searched for terminators
+		int scanned = 0;
+		// start of the first terminator whose tag has not been closed yet, or -1
+		int pending = -1;
+		
+		while(length < buffer.length && (read = in.read(buffer, length, Math.min(8192, buffer.length - length))) != -1) {
+			length += read;
+			
+			if(pending < 0)
+				pending = indexOfTerminator(buffer, 0, scanned, length);
+			
+			while(pending >= 0 && indexOf(buffer, Math.max(pending, scanned), length, '>') >= 0) {
+				final String title = find(new String(buffer, 0, length, "ISO-8859-1"), charset);
+				if(title != null)
+					return title;
+				
+				pending = indexOfTerminator(buffer, pending + 1, scanned, length);
+			}
+			scanned = length;
+		}
+		
+		return "";
+	}
+	
+	/**
+	 * Finds the first terminator that starts at or after from and ends after scanned, so a
+	 * terminator split between two reads is found but one searched before is not found again.
+	 */
+	private static int indexOfTerminator(byte[] buffer, int from, int scanned, int to) {
+		int first = -1;
+		
+		for(String terminator : TERMINATORS) {
+			final int start = Math.max(from, scanned - terminator.length() + 1);
+			final int index = indexOf(buffer, start, to, terminator);
+			
+			if(index >= 0 && (first < 0 || index < first))
+				first = index;
+		}
+		return first;
+	}
+	
+	private static int indexOf(byte[] buffer, int from, int to, String s) {
+		outer:
+		for(int i = from; i <= to - s.length(); i++) {
+			for(int j = 0; j < s.length(); j++) {
+				if(Character.toLowerCase((char)(buffer[i + j] & 0xff)) != s.charAt(j))
+					continue outer;
+			}
+			return i;
+		}
+		return -1;
+	}
+	
+	private static int indexOf(byte[] buffer, int from, int to, char c) {
+		for(int i = from; i < to; i++) {
+			if(buffer[i] == c)
+				return i;
+		}
+		return -1;
+	}
+	
+	private static String find(String page, String charset) {
+		String raw = null;
+		final Matcher title = TITLE.matcher(page);
+		
+		if(title.find()) {
+			raw = title.group(1);
+		}
+		
+		final Matcher meta = META.matcher(page);
+		while(meta.find()) {
+			if(raw != null && meta.start() > title.start())
+				break;
+			
+			final String attributes = meta.group(1);
+			final String property = getAttribute(attributes, "property");
+			final String name = getAttribute(attributes, "name");
+			
+			if(charset == null)
+				charset = getCharset(attributes);
+			
+			if("og:title".equalsIgnoreCase(property) || "og:title".equalsIgnoreCase(name)) {
+				final String content = getAttribute(attributes, "content");
+				
+				if(content != null) {
+					raw = content;
+					break;
+				}
+			}
+		}
+		
+		if(raw == null)
+			return null;
+		
+		// the meta tags after the title may still declare the charset
+		while(charset == null && meta.find()) {
+			charset = getCharset(meta.group(1));
+		}
+		
+		return clean(decode(raw, charset));
+	}
+	
+	private static String getAttribute(String attributes, String name) {
+		final Matcher m = ATTRIBUTE.matcher(attributes);
+		
+		while(m.find()) {
+			if(m.group(1).equalsIgnoreCase(name)) {
+				for(int i = 2; i <= 4; i++) {
+					if(m.group(i) != null)
+						return m.group(i);
+				}
+			}
+		}
+		return null;
+	}
+	
+	private static String getCharset(String attributes) {
+		final String charset = getAttribute(attributes, "charset");
+		
+		if(charset != null)
+			return charset.trim();
+		
+		if("content-type".equalsIgnoreCase(getAttribute(attributes, "http-equiv"))) {
+			final String content = getAttribute(attributes, "content");
+			
+			if(content != null) {
+				final Matcher m = CHARSET.matcher(content);
+				if(m.find())
+					return m.group(1);
+			}
+		}
+		return null;
+	}
+	
+	private static String decode(String raw, String charset) {
+		Charset cs;
+		
+		try {
+			cs = Charset.forName(charset != null ? charset : DEFAULT_CHARSET);
+		} catch (Exception e) {
+			cs = Charset.forName(DEFAULT_CHARSET);
+		}
+		
+		return new String(raw.getBytes(Charset.forName("ISO-8859-1")), cs);
+	}
+	
+	private static String clean(String title) {
+		return WHITESPACE.matcher(decodeEntities(title)).replaceAll(" ").trim();
+	}
+	
+	/**
+	 * Replaces numeric character references and the named entities common in titles.
+	 * Unknown entities are left as they are.
+	 */
+	static String decodeEntities(String s) {
+		if(s.indexOf('&') < 0)
+			return s;
+		
+		final Matcher m = ENTITY.matcher(s);
+		final StringBuffer sb = new StringBuffer();
+		
+		while(m.find()) {
+			final String entity = m.group(1);
+			String replacement = null;
+			
+			if(entity.charAt(0) == '#') {
+				try {
+					final int codePoint = entity.charAt(1) == 'x' || entity.charAt(1) == 'X' 
+						? Integer.parseInt(entity.substring(2), 16) 
+						: Integer.parseInt(entity.substring(1));
+					
+					if(Character.isValidCodePoint(codePoint) && codePoint != 0)
+						replacement = new String(Character.toChars(codePoint));
+				} catch (NumberFormatException e) {
+					// out of range, left as is
+				}
+			} else {
+				replacement = getNamedEntity(entity);
+			}
+			
+			m.appendReplacement(sb, Matcher.quoteReplacement(replacement != null ? replacement : m.group()));
+		}
+		m.appendTail(sb);
+		
+		return sb.toString();
+	}
+	
+	private static String getNamedEntity(String name) {
+		if(name.equals("amp")) return "&";
+		if(name.equals("lt")) return "<";
+		if(name.equals("gt")) return ">";
+		if(name.equals("quot")) return "\"";
+		if(name.equals("apos")) return "'";
+		if(name.equals("nbsp")) return "\u00a0";
+		if(name.equals("ndash")) return "\u2013";
+		if(name.equals("mdash")) return "\u2014";
+		if(name.equals("lsquo")) return "\u2018";
+		if(name.equals("rsquo")) return "\u2019";
+		if(name.equals("ldquo")) return "\u201c";
+		if(name.equals("rdquo")) return "\u201d";
+		if(name.equals("hellip")) return "\u2026";
+		if(name.equals("middot")) return "\u00b7";
+		if(name.equals("bull")) return "\u2022";
+		if(name.equals("laquo")) return "\u00ab";
+		if(name.equals("raquo")) return "\u00bb";
+		if(name.equals("copy")) return "\u00a9";
+		if(name.equals("reg")) return "\u00ae";
+		if(name.equals("trade")) return "\u2122";
+		return null;
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * PinDroid - http://code.google.com/p/PinDroid/
+ *
+ * Copyright (C) 2010 Matt Schmidt
+ *
+ * PinDroid is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * PinDroid is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PinDroid; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307
+ * USA
+ */
+
+
+package com.pindroid.xml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import android.util.Xml;
+
+import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.util.DateParser;
+import com.pindroid.util.StringPool;
+
+/**
+ * Reads bookmarks one at a time from a posts response of the api or from an rss feed.  Only
+ * the bookmark being read is held in memory, and the caller may stop and close the stream
+ * as soon as it has read enough.
+ * 
+ * <pre>
+ * BookmarkStream stream = BookmarkStream.forPosts(in);
+ * try {
+ *     Bookmark b;
+ *     while((b = stream.next()) != null) {
+ *         ...
+ *     }
+ * } finally {
+ *     stream.close();
+ * }
+ * </pre>
+ */
+public class BookmarkStream implements Closeable {
+	
+	static final String nsDc = "http://purl.org/dc/elements/1.1/";
+	static final String ns = "http://purl.org/rss/1.0/";
+	
+	private final InputStream is;
+	private final XmlPullParser parser;
+	private final boolean feed;
+	private final StringPool pool;
+	private boolean finished = false;
+	
+	private BookmarkStream(InputStream stream, boolean feed) throws ParseException {
+		is = stream;
+		this.feed = feed;
+		pool = new StringPool();
+		parser = Xml.newPullParser();
+		
+		try {
+			parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, feed);
+			parser.setInput(stream, "UTF-8");
+		} catch (XmlPullParserException e) {
+			throw new ParseException(e.getMessage(), 0);
+		}
+	}
+	
+	/**
+	 * Reads the post elements of a posts/all, posts/get or posts/recent response.
+	 */
+	public static BookmarkStream forPosts(InputStream stream) throws ParseException {
+		return new BookmarkStream(stream, false);
+	}
+	
+	/**
+	 * Reads the items of an rss 1.0 feed.
+	 */
+	public static BookmarkStream forFeed(InputStream stream) throws ParseException {
+		return new BookmarkStream(stream, true);
+	}
+
+	/**
+	 * @return The next bookmark, or null once the end of the document has been reached.
+	 * @throws ParseException If the document is not well formed, including when it was cut
+	 * short.
+	 */
+	public Bookmark next() throws ParseException {
+		if(finished)
+			return null;
+		
+		try {
+			int event;
+			
+			while((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+				if(event != XmlPullParser.START_TAG || parser.getDepth() != 2)
+					continue;
+				
+				if(!feed && parser.getName().equals("post"))
+					return readPost();
+				else if(feed && parser.getName().equals("item") && ns.equals(parser.getNamespace()))
+					return readItem();
+			}
+		} catch (XmlPullParserException e) {
+			throw new ParseException(e.getMessage(), 0);
+		} catch (IOException e) {
+			throw new ParseException(e.getMessage(), 0);
+		} catch (IllegalArgumentException e) {
+			// a malformed timestamp
+			throw new ParseException(e.getMessage(), 0);
+		}
+		
+		finished = true;
+		return null;
+	}
+	
+	/**
+	 * Reads the remaining bookmarks into a list, for callers that need a whole page at once.
+	 */
+	public ArrayList<Bookmark> readAll() throws ParseException {
+		final ArrayList<Bookmark> bookmarks = new ArrayList<Bookmark>();
+		Bookmark bookmark;
+		
+		while((bookmark = next()) != null) {
+			bookmarks.add(bookmark);
+		}
+		return bookmarks;
+	}
+	
+	private Bookmark readPost() {
+		final Bookmark bookmark = new Bookmark();
+		final String url = parser.getAttributeValue(null, "href");
+		final String time = parser.getAttributeValue(null, "time");
+		final String description = parser.getAttributeValue(null, "description");
+		final String extended = parser.getAttributeValue(null, "extended");
+		final String tag = parser.getAttributeValue(null, "tag");
+		final String hash = parser.getAttributeValue(null, "hash");
+		final String meta = parser.getAttributeValue(null, "meta");
+		final String toread = parser.getAttributeValue(null, "toread");
+		final String shared = parser.getAttributeValue(null, "shared");
+		
+		if(url != null) {
+			bookmark.setUrl(url);
+		}
+		if(time != null) {
+			bookmark.setTime(DateParser.parseTime(time));
+		}
+		if(description != null) {
+			bookmark.setDescription(description);
+		}
+		if(extended != null) {
+			bookmark.setNotes(extended);
+		}
+		if(tag != null) {
+			bookmark.setTagString(pool.intern(tag));
+		}
+		if(hash != null) {
+			bookmark.setHash(hash);
+		}
+		if(meta != null) {
+			bookmark.setMeta(meta);
+		}
+		
+		bookmark.setToRead(toread != null && toread.equals("yes"));
+		bookmark.setShared(!(shared != null && shared.equals("no")));
+		bookmark.setSynced(1);
+		return bookmark;
+	}
+	
+	private Bookmark readItem() throws XmlPullParserException, IOException {
+		final Bookmark bookmark = new Bookmark();
+		final int depth = parser.getDepth();
+		int event;
+		
+		while((event = parser.next()) != XmlPullParser.END_TAG || parser.getDepth() > depth) {
+			if(event == XmlPullParser.END_DOCUMENT)
+				throw new XmlPullParserException("Unexpected end of document");
+			
+			if(event != XmlPullParser.START_TAG || parser.getDepth() != depth + 1)
+				continue;
+			
+			final String name = parser.getName();
+			final String namespace = parser.getNamespace();
+			
+			if(ns.equals(namespace) && name.equals("title")) {
+				bookmark.setDescription(parser.nextText());
+			} else if(ns.equals(namespace) && name.equals("link")) {
+				bookmark.setUrl(parser.nextText());
+			} else if(ns.equals(namespace) && name.equals("description")) {
+				bookmark.setNotes(parser.nextText().trim());
+			} else if(nsDc.equals(namespace) && name.equals("date")) {
+				bookmark.setTime(DateParser.parseTime(parser.nextText().trim()));
+			} else if(nsDc.equals(namespace) && name.equals("creator")) {
+				bookmark.setAccount(pool.intern(parser.nextText()));
+			} else if(nsDc.equals(namespace) && name.equals("subject")) {
+				bookmark.setTagString(pool.intern(parser.nextText().trim()));
+			}
+		}
+		
+		if(bookmark.getDescription() == null || bookmark.getDescription().equals(""))
+			bookmark.setDescription(bookmark.getUrl());
+		
+		return bookmark;
+	}
+	
+	public void close() throws IOException {
+		finished = true;
+		is.close();
+	}
+}
@@ -33,6 +33,7 @@ import android.util.Xml;
 
 import com.pindroid.providers.BookmarkContent.Bookmark;
 import com.pindroid.util.DateParser;
+import com.pindroid.util.StringPool;
 
 public class SaxBookmarkParser {
 
@@ -43,6 +44,7 @@ public class SaxBookmarkParser {
     }
 
     public ArrayList<Bookmark> parse() throws ParseException {
+        final StringPool pool = new StringPool();
         final Bookmark currentBookmark = new Bookmark();
         final RootElement root = new RootElement("posts");
         final ArrayList<Bookmark> bookmarks = new ArrayList<Bookmark>();
@@ -72,7 +74,7 @@ public class SaxBookmarkParser {
             		currentBookmark.setNotes(extended);
             	}
             	if(tag != null) {
-            		currentBookmark.setTagString(tag);
+            		currentBookmark.setTagString(pool.intern(tag));
             	}
             	if(hash != null) {
             		currentBookmark.setHash(hash);
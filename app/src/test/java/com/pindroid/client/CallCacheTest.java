@@ -0,0 +1,107 @@
+package com.pindroid.client;
+
+import com.pindroid.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants=BuildConfig.class, sdk=23)
+public class CallCacheTest {
+
+    @Test
+    public void get_collapsesConcurrentCalls() throws Exception {
+        final CallCache<String> cache = new CallCache<String>(60 * 1000, 8);
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        for(int i = 0; i < 4; i++) {
+            results.add(executor.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    return cache.get("suggest", new Callable<String>() {
+                        public String call() throws Exception {
+                            calls.incrementAndGet();
+                            release.await();
+                            return "tags";
+                        }
+                    });
+                }
+            }));
+        }
+
+        Thread.sleep(200);
+        release.countDown();
+        for(Future<String> result : results)
+            assertEquals("tags", result.get());
+        executor.shutdown();
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void get_servesStoredResult() throws Exception {
+        CallCache<String> cache = new CallCache<String>(60 * 1000, 8);
+
+        assertEquals("first", cache.get("title", constant("first")));
+        assertEquals("first", cache.get("title", constant("second")));
+
+        cache.clear();
+        assertEquals("second", cache.get("title", constant("second")));
+    }
+
+    @Test
+    public void get_doesNotKeepFailures() throws Exception {
+        CallCache<String> cache = new CallCache<String>(60 * 1000, 8);
+
+        try {
+            cache.get("title", new Callable<String>() {
+                public String call() throws Exception {
+                    throw new IOException();
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertEquals("retried", cache.get("title", constant("retried")));
+    }
+
+    @Test
+    public void get_dropsLeastRecentlyUsed() throws Exception {
+        CallCache<String> cache = new CallCache<String>(60 * 1000, 2);
+
+        cache.get("a", constant("a"));
+        cache.get("b", constant("b"));
+        cache.get("a", constant("a2"));
+        cache.get("c", constant("c"));
+
+        assertEquals("a", cache.get("a", constant("a3")));
+        assertEquals("b2", cache.get("b", constant("b2")));
+    }
+
+    private static Callable<String> constant(final String value) {
+        return new Callable<String>() {
+            public String call() {
+                return value;
+            }
+        };
+    }
+}
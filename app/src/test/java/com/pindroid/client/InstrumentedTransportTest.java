@@ -0,0 +1,98 @@
+package com.pindroid.client;
+
+import com.pindroid.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants=BuildConfig.class, sdk=23)
+public class InstrumentedTransportTest {
+
+    private static final String ACCOUNT = "instrumented_account";
+
+    private NetworkStats totals;
+    private long requests, retries, compressedBytes, bytes;
+
+    @Before
+    public void beforeEachTest() {
+        NetworkStats.reset();
+
+        // account totals survive a reset, so compare against what is already there
+        totals = NetworkStats.getAccountTotals(ACCOUNT);
+        requests = totals.getRequests();
+        retries = totals.getRetries();
+        compressedBytes = totals.getCompressedBytes();
+        bytes = totals.getBytes();
+    }
+
+    @Test
+    public void execute_countsEachRequestOnceForEndpointAndAccount() throws Exception {
+        HttpTransport transport = new InstrumentedTransport(new HttpTransport() {
+            public HttpResponse execute(HttpRequest request) {
+                return new HttpResponse(200, null, new ByteArrayInputStream(new byte[800]), new AtomicLong(100));
+            }
+        });
+
+        transport.execute(apiRequest(false)).getBodyAsString();
+        transport.execute(apiRequest(true)).getBodyAsString();
+
+        NetworkStats endpoint = NetworkStats.get("v1/posts/all");
+        assertEquals(2, endpoint.getRequests());
+        assertEquals(1, endpoint.getRetries());
+
+        assertEquals(2, totals.getRequests() - requests);
+        assertEquals(1, totals.getRetries() - retries);
+        assertEquals(200, totals.getCompressedBytes() - compressedBytes);
+        assertEquals(1600, totals.getBytes() - bytes);
+    }
+
+    @Test
+    public void execute_countsFailures() throws Exception {
+        HttpTransport transport = new InstrumentedTransport(new HttpTransport() {
+            public HttpResponse execute(HttpRequest request) throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+
+        try {
+            transport.execute(apiRequest(false));
+            fail();
+        } catch (IOException e) {
+            assertEquals(1, NetworkStats.get("v1/posts/all").getRequests());
+            assertEquals(1, totals.getRequests() - requests);
+        }
+    }
+
+    @Test
+    public void execute_leavesAccountTotalsAloneWithoutAccount() throws Exception {
+        HttpTransport transport = new InstrumentedTransport(new HttpTransport() {
+            public HttpResponse execute(HttpRequest request) {
+                return new HttpResponse(200, null, new ByteArrayInputStream(new byte[0]));
+            }
+        });
+
+        transport.execute(new HttpRequest("http://example.com/")).close();
+
+        assertEquals(1, NetworkStats.get("other").getRequests());
+        assertEquals(0, totals.getRequests() - requests);
+    }
+
+    private static HttpRequest apiRequest(boolean retry) {
+        HttpRequest request = new HttpRequest("https://api.pinboard.in/v1/posts/all");
+        request.setEndpoint("v1/posts/all");
+        request.setAccount(ACCOUNT);
+        request.setRetry(retry);
+        return request;
+    }
+}
@@ -0,0 +1,50 @@
+package com.pindroid.client;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkStatsTest {
+
+    @Before
+    public void beforeEachTest() {
+        NetworkStats.reset();
+    }
+
+    @Test
+    public void getPercentile_returnsBucketBound() {
+        NetworkStats stats = NetworkStats.get("v1/posts/all");
+        for(int i = 0; i < 8; i++)
+            stats.recordResponse(200, 40);
+        stats.recordResponse(200, 700);
+        stats.recordResponse(429, 12000);
+
+        assertEquals(50, stats.getPercentile(0.5));
+        assertEquals(1000, stats.getPercentile(0.9));
+        assertEquals(12000, stats.getPercentile(1.0));
+    }
+
+    @Test
+    public void dump_reportsEachEndpoint() {
+        NetworkStats.get("v1/posts/all").recordResponse(200, 120);
+        NetworkStats.get("v1/posts/all").recordBytes(1000, 8000);
+        NetworkStats.get("v1/posts/all").recordRetry();
+        NetworkStats.get("rss/recent").recordFailure(30000);
+
+        String dump = NetworkStats.dump();
+
+        assertTrue(dump.contains("v1/posts/all: requests=1, failures=0, retries=1, status=200x1"));
+        assertTrue(dump.contains("bytes=1000/8000"));
+        assertTrue(dump.contains("rss/recent: requests=1, failures=1"));
+    }
+
+    @Test
+    public void redact_removesSecrets() {
+        assertEquals("https://api.pinboard.in/v1/posts/all?auth_token=REDACTED&meta=yes",
+            NetworkStats.redact("https://api.pinboard.in/v1/posts/all?auth_token=user:0123456789ABCDEF&meta=yes"));
+        assertEquals("http://feeds.pinboard.in/rss/secret:REDACTED/u:user/network/",
+            NetworkStats.redact("http://feeds.pinboard.in/rss/secret:0123abcd/u:user/network/"));
+    }
+}
@@ -0,0 +1,161 @@
+package com.pindroid.client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * A minimal local http server standing in for pinboard.in, so that network code can be
+ * exercised and timed without leaving the machine.  Every request is answered with the
+ * response set up by the test, and recorded for inspection.
+ */
+public class StandInServer {
+
+    private final ServerSocket serverSocket;
+    private final String scheme;
+    private final Thread thread;
+    private final List<Map<String, String>> requests = Collections.synchronizedList(new ArrayList<Map<String, String>>());
+
+    private volatile int status = 200;
+    private volatile Map<String, String> headers = new LinkedHashMap<String, String>();
+    private volatile byte[] body = new byte[0];
+    private volatile long delay = 0;
+
+    public StandInServer() throws IOException {
+        this(null);
+    }
+
+    /**
+     * @param sslContext The context to serve https with, see {@link #sslContext()}, or null for http.
+     */
+    public StandInServer(SSLContext sslContext) throws IOException {
+        final InetAddress address = InetAddress.getByName("127.0.0.1");
+        if(sslContext != null) {
+            serverSocket = sslContext.getServerSocketFactory().createServerSocket(0, 50, address);
+            scheme = "https";
+        } else {
+            serverSocket = new ServerSocket(0, 50, address);
+            scheme = "http";
+        }
+        thread = new Thread(new Runnable() {
+            public void run() {
+                serve();
+            }
+        }, "StandInServer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public String url(String path) {
+        return scheme + "://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    /**
+     * @return A context holding a self-signed certificate for 127.0.0.1, which both serves
+     * and trusts it.
+     */
+    public static SSLContext sslContext() throws Exception {
+        final char[] password = "standin".toCharArray();
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        final InputStream in = StandInServer.class.getResourceAsStream("/standin.jks");
+        try {
+            keyStore.load(in, password);
+        } finally {
+            in.close();
+        }
+
+        final KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keys.init(keyStore, password);
+        final TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(keyStore);
+
+        final SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keys.getKeyManagers(), trust.getTrustManagers(), null);
+        return context;
+    }
+
+    public void respond(int status, Map<String, String> headers, byte[] body) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * Holds back each response for the given time, to simulate a slow server.
+     */
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    /**
+     * @return The headers of each request received, keyed by lower case name, with the request
+     * line under the empty key.
+     */
+    public List<Map<String, String>> getRequests() {
+        return requests;
+    }
+
+    public void shutdown() throws IOException {
+        serverSocket.close();
+    }
+
+    private void serve() {
+        while(!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                try {
+                    handle(socket);
+                } finally {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // the server was shut down, or the client went away
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException, InterruptedException {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+        final Map<String, String> request = new LinkedHashMap<String, String>();
+
+        request.put("", in.readLine());
+        String line;
+        while((line = in.readLine()) != null && line.length() > 0) {
+            final int colon = line.indexOf(':');
+            request.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+        }
+        requests.add(request);
+
+        if(delay > 0)
+            Thread.sleep(delay);
+
+        final StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(status).append(" Stand-in\r\n");
+        for(Map.Entry<String, String> h : headers.entrySet())
+            head.append(h.getKey()).append(": ").append(h.getValue()).append("\r\n");
+        head.append("Content-Length: ").append(body.length).append("\r\n");
+        head.append("Connection: close\r\n\r\n");
+
+        final OutputStream out = socket.getOutputStream();
+        out.write(head.toString().getBytes("ISO-8859-1"));
+        out.write(body);
+        out.flush();
+    }
+}
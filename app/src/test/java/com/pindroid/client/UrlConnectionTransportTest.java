@@ -0,0 +1,178 @@
+package com.pindroid.client;
+
+import com.pindroid.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InterruptedIOException;
+import java.io.SocketTimeoutException;
+import java.net.ProtocolException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.SSLContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants=BuildConfig.class, sdk=23)
+public class UrlConnectionTransportTest {
+
+    private StandInServer server;
+    private HttpTransport transport;
+
+    @Before
+    public void beforeEachTest() throws Exception {
+        server = new StandInServer();
+        transport = new UrlConnectionTransport(null);
+    }
+
+    @After
+    public void afterEachTest() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void execute_returnsStatusHeadersAndBody() throws Exception {
+        server.respond(200, headers("Content-Type", "text/xml; charset=UTF-8"), "<result code=\"done\" />".getBytes("UTF-8"));
+
+        HttpRequest request = new HttpRequest(server.url("/v1/posts/update"));
+        request.setHeader("User-Agent", "PinDroid");
+        HttpResponse response = transport.execute(request);
+
+        assertEquals(200, response.getStatusCode());
+        assertEquals("text/xml; charset=UTF-8", response.getHeader("content-type"));
+        assertEquals("<result code=\"done\" />", response.getBodyAsString());
+        assertEquals("GET /v1/posts/update HTTP/1.1", server.getRequests().get(0).get(""));
+        assertEquals("PinDroid", server.getRequests().get(0).get("user-agent"));
+    }
+
+    @Test
+    public void execute_decompressesGzipAndCountsCompressedBytes() throws Exception {
+        byte[] compressed = gzip("<posts></posts>");
+        server.respond(200, headers("Content-Encoding", "gzip"), compressed);
+
+        HttpRequest request = new HttpRequest(server.url("/v1/posts/all"));
+        request.setGzip(true);
+        HttpResponse response = transport.execute(request);
+
+        assertEquals("<posts></posts>", response.getBodyAsString());
+        assertEquals("gzip", server.getRequests().get(0).get("accept-encoding"));
+        assertEquals(compressed.length, response.getTransferredBytes());
+    }
+
+    @Test
+    public void execute_exposesErrorBody() throws Exception {
+        server.respond(429, headers("Retry-After", "30"), "Too Many Requests".getBytes("UTF-8"));
+
+        HttpResponse response = transport.execute(new HttpRequest(server.url("/v1/posts/all")));
+
+        assertEquals(429, response.getStatusCode());
+        assertEquals("30", response.getHeader("Retry-After"));
+        assertEquals("Too Many Requests", response.getBodyAsString());
+    }
+
+    @Test
+    public void execute_sendsBasicCredentials() throws Exception {
+        HttpRequest request = new HttpRequest(server.url("/v1/user/api_token"));
+        request.setCredentials("user", "pass");
+        transport.execute(request).close();
+
+        assertEquals("Basic dXNlcjpwYXNz", server.getRequests().get(0).get("authorization"));
+    }
+
+    @Test
+    public void execute_followsRedirectFromHttpToHttps() throws Exception {
+        SSLContext sslContext = StandInServer.sslContext();
+        StandInServer secure = new StandInServer(sslContext);
+        try {
+            secure.respond(200, headers("Content-Type", "text/html"), "<title>Moved</title>".getBytes("UTF-8"));
+            server.respond(301, headers("Location", secure.url("/article")), new byte[0]);
+            transport = new UrlConnectionTransport(sslContext.getSocketFactory());
+
+            HttpResponse response = transport.execute(new HttpRequest(server.url("/article")));
+
+            assertEquals(200, response.getStatusCode());
+            assertEquals("<title>Moved</title>", response.getBodyAsString());
+            assertEquals("GET /article HTTP/1.1", secure.getRequests().get(0).get(""));
+        } finally {
+            secure.shutdown();
+        }
+    }
+
+    @Test
+    public void execute_stopsFollowingEndlessRedirects() throws Exception {
+        server.respond(302, headers("Location", "/again"), new byte[0]);
+
+        try {
+            transport.execute(new HttpRequest(server.url("/again")));
+            fail();
+        } catch (ProtocolException e) {
+            assertEquals(UrlConnectionTransport.MAX_REDIRECTS + 1, server.getRequests().size());
+        }
+    }
+
+    @Test
+    public void execute_timesOutOnSlowServer() throws Exception {
+        server.setDelay(2000);
+
+        HttpRequest request = new HttpRequest(server.url("/v1/posts/all"));
+        request.setTimeouts(1000, 200);
+
+        try {
+            transport.execute(request);
+            fail();
+        } catch (SocketTimeoutException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void cancel_abortsWaitingRequest() throws Exception {
+        server.setDelay(5000);
+
+        final HttpRequest request = new HttpRequest(server.url("/v1/posts/all"));
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                request.cancel();
+            }
+        }).start();
+
+        long start = System.currentTimeMillis();
+        try {
+            transport.execute(request);
+            fail();
+        } catch (InterruptedIOException e) {
+            assertTrue(request.isCancelled());
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+    }
+
+    private static Map<String, String> headers(String name, String value) {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        headers.put(name, value);
+        return headers;
+    }
+
+    private static byte[] gzip(String text) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(text.getBytes("UTF-8"));
+        gzip.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,101 @@
+package com.pindroid.providers;
+
+import com.pindroid.BuildConfig;
+import com.pindroid.providers.BookmarkContent.Bookmark;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants=BuildConfig.class, sdk=23)
+public class BookmarkContentProviderTest {
+
+    private static final String ACCOUNT = "test_account";
+    private static final Uri BOOKMARKS = BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, ACCOUNT);
+
+    private BookmarkContentProvider provider;
+
+    @Before
+    public void beforeEachTest() {
+        provider = new BookmarkContentProvider();
+        provider.attachInfo(RuntimeEnvironment.application, null);
+    }
+
+    @Test
+    public void deleteUnseen_removesOnlySyncedBookmarksMissingFromThePass() {
+        insert("seen", 1);
+        insert("gone", 1);
+        insert("seenInOldPass", 1);
+        insert("localChange", 0);
+        insert("localDelete", -1);
+
+        recordSeen(1, "seenInOldPass");
+        recordSeen(2, "seen");
+
+        Bundle extras = new Bundle();
+        extras.putLong(BookmarkContentProvider.EXTRA_PASS, 2);
+        Bundle result = provider.call(BookmarkContentProvider.METHOD_DELETE_UNSEEN, ACCOUNT, extras);
+
+        assertEquals(2, result.getInt(BookmarkContentProvider.EXTRA_COUNT));
+        assertEquals(new HashSet<String>(Arrays.asList("seen", "localChange", "localDelete")), hashes());
+    }
+
+    @Test
+    public void deleteUnseen_forgetsTheSeenHashes() {
+        insert("seen", 1);
+        recordSeen(1, "seen");
+
+        Bundle extras = new Bundle();
+        extras.putLong(BookmarkContentProvider.EXTRA_PASS, 1);
+        provider.call(BookmarkContentProvider.METHOD_DELETE_UNSEEN, ACCOUNT, extras);
+        Bundle result = provider.call(BookmarkContentProvider.METHOD_DELETE_UNSEEN, ACCOUNT, extras);
+
+        assertEquals(1, result.getInt(BookmarkContentProvider.EXTRA_COUNT));
+        assertEquals(new HashSet<String>(), hashes());
+    }
+
+    private void insert(String hash, int synced) {
+        ContentValues values = new ContentValues();
+        values.put(Bookmark.Account, ACCOUNT);
+        values.put(Bookmark.Url, "http://pindroid.in/" + hash);
+        values.put(Bookmark.Description, hash);
+        values.put(Bookmark.Hash, hash);
+        values.put(Bookmark.Synced, synced);
+        values.put(Bookmark.Deleted, synced == -1 ? 1 : 0);
+        provider.insert(BOOKMARKS, values);
+    }
+
+    private void recordSeen(long pass, String... hashes) {
+        Bundle extras = new Bundle();
+        extras.putParcelableArrayList(BookmarkContentProvider.EXTRA_BOOKMARKS, new ArrayList<Bookmark>());
+        extras.putStringArrayList(BookmarkContentProvider.EXTRA_SEEN, new ArrayList<String>(Arrays.asList(hashes)));
+        extras.putLong(BookmarkContentProvider.EXTRA_PASS, pass);
+        provider.call(BookmarkContentProvider.METHOD_INGEST_BOOKMARKS, ACCOUNT, extras);
+    }
+
+    private Set<String> hashes() {
+        Set<String> hashes = new HashSet<String>();
+        Cursor c = provider.query(BOOKMARKS, new String[]{Bookmark.Hash}, null, null, null);
+        while(c.moveToNext()) {
+            hashes.add(c.getString(0));
+        }
+        c.close();
+        return hashes;
+    }
+}
@@ -2,6 +2,7 @@ package com.pindroid.providers;
 
 import com.pindroid.BuildConfig;
 import com.pindroid.providers.BookmarkContentProvider.DatabaseHelper;
+import com.pindroid.providers.OutboxContent.Outbox;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -10,6 +11,15 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
 @RunWith(RobolectricTestRunner.class)
 @Config(constants=BuildConfig.class, sdk=23)
 public class DatabaseHelperTest {
@@ -25,4 +35,74 @@ public class DatabaseHelperTest {
     public void helper_createsDatabase() {
         helper.getWritableDatabase(); // at least should not crash
     }
+
+    @Test
+    public void outbox_keepsLastOperationPerBookmark() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        db.insertWithOnConflict("outbox", null, outboxEntry("hash1", Outbox.OPERATION_UPSERT), SQLiteDatabase.CONFLICT_REPLACE);
+        db.insertWithOnConflict("outbox", null, outboxEntry("hash1", Outbox.OPERATION_UPSERT), SQLiteDatabase.CONFLICT_REPLACE);
+        db.insertWithOnConflict("outbox", null, outboxEntry("hash1", Outbox.OPERATION_DELETE), SQLiteDatabase.CONFLICT_REPLACE);
+        db.insertWithOnConflict("outbox", null, outboxEntry("hash2", Outbox.OPERATION_UPSERT), SQLiteDatabase.CONFLICT_REPLACE);
+
+        Cursor c = db.query("outbox", new String[]{Outbox.Operation}, Outbox.Hash + "=?", new String[]{"hash1"}, null, null, null);
+        assertEquals(1, c.getCount());
+        c.moveToFirst();
+        assertEquals(Outbox.OPERATION_DELETE, c.getInt(0));
+        c.close();
+
+        c = db.query("outbox", null, null, null, null, null, null);
+        assertEquals(2, c.getCount());
+        c.close();
+    }
+
+    @Test
+    public void upgrade_movesRowsToAccountDatabases() {
+        File path = RuntimeEnvironment.application.getDatabasePath("PinboardBookmarks.db");
+        path.getParentFile().mkdirs();
+
+        SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(path, null);
+        DatabaseHelper.createAccountTables(old);
+        old.execSQL("INSERT INTO bookmark (ACCOUNT, URL, HASH, SYNCED, DELETED) VALUES ('first', 'http://pindroid.in/1', 'hash1', 1, 0)");
+        old.execSQL("INSERT INTO bookmark (ACCOUNT, URL, HASH, SYNCED, DELETED) VALUES ('second', 'http://pindroid.in/2', 'hash2', 1, 0)");
+        old.execSQL("INSERT INTO tag (ACCOUNT, NAME, COUNT) VALUES ('second', 'android', 1)");
+        old.setVersion(27);
+        old.close();
+
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, "bookmark"));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, "tag"));
+
+        SQLiteDatabase first = openAccountDatabase(db, "first");
+        assertEquals(1, DatabaseUtils.queryNumEntries(first, "bookmark", "HASH='hash1'"));
+        assertEquals(0, DatabaseUtils.queryNumEntries(first, "tag"));
+        first.close();
+
+        SQLiteDatabase second = openAccountDatabase(db, "second");
+        assertEquals(1, DatabaseUtils.queryNumEntries(second, "bookmark", "HASH='hash2'"));
+        assertEquals(1, DatabaseUtils.queryNumEntries(second, "tag"));
+        second.close();
+    }
+
+    private SQLiteDatabase openAccountDatabase(SQLiteDatabase global, String account) {
+        Cursor c = global.query("account_database", new String[]{"NUMBER"}, "ACCOUNT=?", new String[]{account}, null, null, null);
+        assertEquals(1, c.getCount());
+        c.moveToFirst();
+        String name = BookmarkContentProvider.getAccountDatabaseName(c.getInt(0));
+        c.close();
+
+        return SQLiteDatabase.openDatabase(RuntimeEnvironment.application.getDatabasePath(name).getPath(), null, 
+            SQLiteDatabase.OPEN_READONLY);
+    }
+
+    private ContentValues outboxEntry(String hash, int operation) {
+        ContentValues values = new ContentValues();
+        values.put(Outbox.Account, "test_account");
+        values.put(Outbox.Hash, hash);
+        values.put(Outbox.Url, "http://pindroid.in/" + hash);
+        values.put(Outbox.Operation, operation);
+        values.put(Outbox.Created, System.currentTimeMillis());
+        return values;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.pindroid.syncadapter;
+
+import com.pindroid.BuildConfig;
+import com.pindroid.providers.BookmarkContent.Bookmark;
+import com.pindroid.providers.BookmarkContentProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants=BuildConfig.class, sdk=23)
+public class BookmarkDiffTest {
+
+    private static final String ACCOUNT = "test_account";
+
+    private final Map<String, Bookmark> local = new HashMap<String, Bookmark>();
+
+    @Test
+    public void compute_insertsNewHash() {
+        Bookmark remote = bookmark("hash1", "meta1");
+
+        BookmarkDiff diff = BookmarkDiff.compute(Arrays.asList(remote), local, ACCOUNT);
+
+        assertEquals(1, diff.getInserts());
+        assertSame(remote, diff.getInsertedBookmarks().get(0));
+        assertTrue(diff.getOperations().isEmpty());
+    }
+
+    @Test
+    public void compute_updatesChangedMeta() {
+        putLocal(7, "hash1", "meta1", 1);
+
+        BookmarkDiff diff = BookmarkDiff.compute(Arrays.asList(bookmark("hash1", "meta2")), local, ACCOUNT);
+
+        assertEquals(0, diff.getInserts());
+        assertEquals(1, diff.getUpdates());
+        assertEquals(1, diff.getOperations().size());
+        assertEquals(BookmarkContentProvider.accountUri(Bookmark.CONTENT_URI, ACCOUNT), diff.getOperations().get(0).getUri());
+    }
+
+    @Test
+    public void compute_leavesEqualMetaAlone() {
+        putLocal(7, "hash1", "meta1", 1);
+
+        BookmarkDiff diff = BookmarkDiff.compute(Arrays.asList(bookmark("hash1", "meta1")), local, ACCOUNT);
+
+        assertTrue(diff.isEmpty());
+        assertEquals(0, diff.getUpdates());
+    }
+
+    @Test
+    public void compute_leavesUnsyncedLocalChangesAlone() {
+        putLocal(7, "hash1", "meta1", 0);
+        putLocal(8, "hash2", "meta1", -1);
+
+        BookmarkDiff diff = BookmarkDiff.compute(Arrays.asList(bookmark("hash1", "meta2"), bookmark("hash2", "meta2")), 
+            local, ACCOUNT);
+
+        assertTrue(diff.isEmpty());
+        assertEquals(0, diff.getInserts());
+        assertEquals(0, diff.getUpdates());
+    }
+
+    private static Bookmark bookmark(String hash, String meta) {
+        Bookmark b = new Bookmark("http://pindroid.in/" + hash);
+        b.setDescription(hash);
+        b.setHash(hash);
+        b.setMeta(meta);
+        return b;
+    }
+
+    private void putLocal(int id, String hash, String meta, int synced) {
+        Bookmark b = new Bookmark(id);
+        b.setHash(hash);
+        b.setMeta(meta);
+        b.setSynced(synced);
+        local.put(hash, b);
+    }
+}
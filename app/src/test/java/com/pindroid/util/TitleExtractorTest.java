@@ -0,0 +1,132 @@
+package com.pindroid.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class TitleExtractorTest {
+
+    @Test
+    public void extract_readsTitleAndDecodesEntities() throws IOException {
+        String page = "<html><head><TITLE lang=\"en\">\n  Tom &amp; Jerry &#8211; &quot;Cartoons&quot; &#x2764;\n</TITLE></head></html>";
+
+        assertEquals("Tom & Jerry – \"Cartoons\" ❤", TitleExtractor.extract(stream(page, "UTF-8"), null));
+    }
+
+    @Test
+    public void extract_usesOgTitleWhenItComesFirst() throws IOException {
+        String page = "<head><meta property='og:title' content='Open Graph &lt;title&gt;'><title>Plain</title></head>";
+
+        assertEquals("Open Graph <title>", TitleExtractor.extract(stream(page, "UTF-8"), null));
+    }
+
+    @Test
+    public void extract_honorsHeaderCharset() throws IOException {
+        String page = "<title>Café crème</title>";
+
+        assertEquals("Café crème", TitleExtractor.extract(stream(page, "ISO-8859-1"), "ISO-8859-1"));
+    }
+
+    @Test
+    public void extract_honorsMetaCharset() throws IOException {
+        String page = "<head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=windows-1251\">"
+                + "<title>Привет</title>";
+
+        assertEquals("Привет", TitleExtractor.extract(stream(page, "windows-1251"), null));
+    }
+
+    @Test
+    public void extract_defaultsToUtf8() throws IOException {
+        String page = "<title>日本語</title>";
+
+        assertEquals("日本語", TitleExtractor.extract(stream(page, "UTF-8"), null));
+    }
+
+    @Test
+    public void extract_stopsAfterTitle() throws IOException {
+        CountingStream in = new CountingStream("<title>Big page</title>", 10 * 1024 * 1024);
+
+        assertEquals("Big page", TitleExtractor.extract(in, null));
+        assertEquals(true, in.read < 16 * 1024);
+    }
+
+    @Test
+    public void extract_givesUpAtByteBudget() throws IOException {
+        CountingStream in = new CountingStream("<html>", 10 * 1024 * 1024);
+
+        assertEquals("", TitleExtractor.extract(in, null));
+        assertEquals(TitleExtractor.MAX_BYTES, in.read);
+    }
+
+    @Test
+    public void extract_findsTitleSplitAcrossReads() throws IOException {
+        String page = "<head><meta charset=\"utf-8\"><meta name=\"viewport\" content=\"width=device-width\">"
+                + "<title>Split</TITLE\n></head>";
+
+        assertEquals("Split", TitleExtractor.extract(new TrickleStream(page), null));
+    }
+
+    @Test
+    public void extract_findsOgTitleSplitAcrossReads() throws IOException {
+        String page = "<head><meta property=\"og:title\" content=\"Open Graph\"><body>";
+
+        assertEquals("Open Graph", TitleExtractor.extract(new TrickleStream(page), null));
+    }
+
+    @Test
+    public void extract_skipsTerminatorsOutsideTags() throws IOException {
+        String page = "<head><script>var s = \"og:title</title>\";</script><title>Real</title>";
+
+        assertEquals("Real", TitleExtractor.extract(new TrickleStream(page), null));
+    }
+
+    @Test
+    public void decodeEntities_leavesUnknownEntities() {
+        assertEquals("&bogus; & &#0;", TitleExtractor.decodeEntities("&bogus; &amp; &#0;"));
+    }
+
+    private static InputStream stream(String s, String charset) throws IOException {
+        return new ByteArrayInputStream(s.getBytes(charset));
+    }
+
+    /**
+     * A page that is read one byte at a time.
+     */
+    private static class TrickleStream extends ByteArrayInputStream {
+        TrickleStream(String s) throws IOException {
+            super(s.getBytes("UTF-8"));
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+
+    /**
+     * A page that starts with the given markup, followed by filler up to the given size.
+     */
+    private static class CountingStream extends InputStream {
+        private final byte[] head;
+        private final int size;
+        int read = 0;
+
+        CountingStream(String head, int size) {
+            this.head = head.getBytes();
+            this.size = size;
+        }
+
+        @Override
+        public int read() {
+            if(read >= size)
+                return -1;
+            int b = read < head.length ? head[read] : ' ';
+            read++;
+            return b;
+        }
+    }
+}